@@ -0,0 +1,123 @@
+package com.encoria.backend.benchmark;
+
+import com.encoria.backend.config.ReadYourWrites;
+import com.encoria.backend.config.SecurityConfig;
+import com.encoria.backend.model.User;
+import com.encoria.backend.security.LocalRevocationBus;
+import com.encoria.backend.security.ResolvedUserCache;
+import com.encoria.backend.security.ResolvedUserJwtAuthenticationConverter;
+import com.encoria.backend.security.RevocationSet;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.AbstractAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+/**
+ * What every authenticated request pays after the token is decoded: {@link SecurityConfig#jwtAuthenticationConverter()}
+ * (resolving the local user) and the {@link SecurityConfig#profileCompletionFilter()} check.
+ * <p>
+ * {@code cache=false} builds the {@link ResolvedUserCache} with a zero TTL, so every conversion goes through the
+ * (in-memory) repository lookup, as it did before the cache existed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class AuthenticationBenchmark {
+
+    private static final int USERS = 10_000;
+    private static final FilterChain NO_OP_CHAIN = (request, response) -> { };
+
+    @Param({"true", "false"})
+    public boolean cache;
+
+    // registered: complete profile, passes the filter; unregistered: no row yet, looked up again, then rejected with 403
+    @Param({"registered", "unregistered"})
+    public String subject;
+
+    private ResolvedUserJwtAuthenticationConverter converter;
+    private OncePerRequestFilter profileCompletionFilter;
+    private Jwt jwt;
+    private MockHttpServletRequest request;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        List<User> users = LongStream.rangeClosed(1, USERS).mapToObj(BenchmarkUsers::user).toList();
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        ReadYourWrites readYourWrites = new ReadYourWrites(Duration.ofSeconds(5), "");
+        ResolvedUserCache resolvedUserCache = new ResolvedUserCache(InMemoryUserRepository.of(users),
+                readYourWrites, meterRegistry, 10_000, cache ? Duration.ofMinutes(1) : Duration.ZERO,
+                cache ? Duration.ofSeconds(1) : Duration.ZERO);
+        RevocationSet revocationSet = new RevocationSet(InMemoryUserRepository.of(users), new LocalRevocationBus(),
+                meterRegistry, Duration.ofMinutes(5));
+        revocationSet.load();
+        SecurityConfig securityConfig = new SecurityConfig(resolvedUserCache, readYourWrites, revocationSet, meterRegistry);
+        converter = securityConfig.jwtAuthenticationConverter();
+        profileCompletionFilter = securityConfig.profileCompletionFilter();
+
+        String sub = subject.equals("registered") ? users.get(USERS / 2).getExternalAuthId() : "auth0|not-registered";
+        Instant now = Instant.now();
+        jwt = Jwt.withTokenValue("benchmark-token")
+                .header("alg", "RS256")
+                .subject(sub)
+                .issuer("https://issuer.example.com/")
+                .audience(List.of("api"))
+                .issuedAt(now)
+                .expiresAt(now.plus(Duration.ofHours(1)))
+                .build();
+
+        request = new MockHttpServletRequest("GET", "/api/users/me");
+        SecurityContextHolder.getContext().setAuthentication(converter.convert(jwt));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Benchmark
+    public AbstractAuthenticationToken convert() {
+        return converter.convert(jwt);
+    }
+
+    @Benchmark
+    public int profileCompletionFilter() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        profileCompletionFilter.doFilter(request, response, NO_OP_CHAIN);
+        return response.getStatus();
+    }
+
+    // Both steps, as run by the security chain for one request
+    @Benchmark
+    public int convertAndFilter() throws Exception {
+        SecurityContextHolder.getContext().setAuthentication(converter.convert(jwt));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        profileCompletionFilter.doFilter(request, response, NO_OP_CHAIN);
+        return response.getStatus();
+    }
+}
@@ -0,0 +1,78 @@
+package com.encoria.backend.benchmark;
+
+import com.encoria.backend.util.BloomFilter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@link BloomFilter} behind the availability endpoint, filled with {@code users} usernames.
+ * Footprint and measured false-positive rate are printed once per fork (JMH has no memory metric).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class AvailabilityIndexBenchmark {
+
+    private static final int PROBES = 4096;
+
+    @Param({"1000000", "10000000"})
+    public int users;
+
+    private BloomFilter filter;
+    private final String[] taken = new String[PROBES];
+    private final String[] available = new String[PROBES];
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        filter = new BloomFilter(users, 0.01);
+        for (int i = 0; i < users; i++) {
+            filter.add(username(i));
+        }
+        for (int i = 0; i < PROBES; i++) {
+            taken[i] = username((int) ((long) i * users / PROBES));
+            available[i] = "free." + i;
+        }
+
+        int falsePositives = 0;
+        int samples = 100_000;
+        for (int i = 0; i < samples; i++) {
+            if (filter.mightContain("never.added." + i)) {
+                falsePositives++;
+            }
+        }
+        System.out.printf("%nBloomFilter: %,d users, %,d KB, %d hashes, measured false-positive rate %.4f%n",
+                users, filter.memoryBytes() / 1024, filter.hashCount(), (double) falsePositives / samples);
+    }
+
+    private static String username(int i) {
+        return "user." + i;
+    }
+
+    // Negative answer: the request never reaches the database
+    @Benchmark
+    public boolean availableUsername() {
+        return filter.mightContain(available[next++ & (PROBES - 1)]);
+    }
+
+    // Positive answer: falls through to existsByUsername in AvailabilityService
+    @Benchmark
+    public boolean takenUsername() {
+        return filter.mightContain(taken[next++ & (PROBES - 1)]);
+    }
+}
@@ -0,0 +1,53 @@
+package com.encoria.backend.benchmark;
+
+import com.encoria.backend.model.User;
+import com.encoria.backend.model.UserRole;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Deterministic test users, so runs on different releases see the same data.
+ */
+final class BenchmarkUsers {
+
+    static final String[] FIRST_NAMES = {
+            "Ana", "Bruno", "Carla", "Daniel", "Elena", "Felipe", "Gabriela", "Hugo", "Irene", "Javier",
+            "Karla", "Lucas", "Marta", "Nicolas", "Olivia", "Pablo", "Quentin", "Rosa", "Sergio", "Teresa"
+    };
+    static final String[] LAST_NAMES = {
+            "Alvarez", "Benitez", "Castro", "Diaz", "Estevez", "Fernandez", "Garcia", "Herrera", "Iglesias", "Jimenez",
+            "Lopez", "Martinez", "Navarro", "Ortega", "Perez", "Ramos", "Sanchez", "Torres", "Vargas", "Zamora"
+    };
+
+    static final UserRole USER_ROLE = new UserRole(1, "USER");
+
+    private BenchmarkUsers() {
+    }
+
+    static User user(long id) {
+        Random random = new Random(id);
+        String firstName = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)];
+        String lastName = LAST_NAMES[random.nextInt(LAST_NAMES.length)];
+        String username = (firstName + "." + lastName).toLowerCase() + id;
+        Instant createdAt = Instant.parse("2024-01-01T00:00:00Z").plusSeconds(id * 60);
+        return User.builder()
+                .id(id)
+                .uuid(new UUID(id, id))
+                .externalAuthId("auth0|" + id)
+                .username(username)
+                .email(username + "@example.com")
+                .firstName(firstName)
+                .lastName(lastName)
+                .birthdate(LocalDate.of(1970 + (int) (id % 40), 1 + (int) (id % 12), 1 + (int) (id % 28)))
+                .pictureUrl("https://cdn.example.com/avatars/" + id + ".png")
+                .role(USER_ROLE)
+                .isEnabled(true)
+                .isNonLocked(true)
+                .createdAt(createdAt)
+                .updatedAt(createdAt)
+                .build();
+    }
+}
@@ -0,0 +1,52 @@
+package com.encoria.backend.benchmark;
+
+import com.encoria.backend.model.User;
+import com.encoria.backend.model.UserAuthView;
+import com.encoria.backend.repository.UserRepository;
+
+import java.lang.reflect.Proxy;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * {@link UserRepository} double backed by a HashMap, so benchmarks measure our code and not JDBC.
+ * Only the lookups used on the request path are implemented; anything else throws.
+ */
+final class InMemoryUserRepository {
+
+    private InMemoryUserRepository() {
+    }
+
+    static UserRepository of(Collection<User> users) {
+        Map<String, User> byExternalAuthId = users.stream()
+                .collect(Collectors.toMap(User::getExternalAuthId, Function.identity()));
+        Map<String, User> byUsername = users.stream()
+                .collect(Collectors.toMap(User::getUsername, Function.identity()));
+        Map<String, User> byEmail = users.stream()
+                .collect(Collectors.toMap(User::getEmail, Function.identity()));
+
+        return (UserRepository) Proxy.newProxyInstance(UserRepository.class.getClassLoader(),
+                new Class<?>[]{UserRepository.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "findByExternalAuthId" -> Optional.ofNullable(byExternalAuthId.get((String) args[0]));
+                    case "findAuthViewByExternalAuthId" -> Optional.ofNullable(byExternalAuthId.get((String) args[0]))
+                            .map(InMemoryUserRepository::authView);
+                    case "existsByExternalAuthId" -> byExternalAuthId.containsKey((String) args[0]);
+                    case "existsByUsername" -> byUsername.containsKey((String) args[0]);
+                    case "existsByEmail" -> byEmail.containsKey((String) args[0]);
+                    case "findRevokedUserIds" -> users.stream()
+                            .filter(user -> !user.isEnabled() || !user.isNonLocked()).map(User::getId).toList();
+                    case "toString" -> "InMemoryUserRepository(" + users.size() + " users)";
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    default -> throw new UnsupportedOperationException(method.getName() + " is not available in benchmarks");
+                });
+    }
+
+    private static UserAuthView authView(User user) {
+        return new UserAuthView(user.getExternalAuthId(), user.getId(), user.getUuid(), user.getUsername(),
+                user.getRole().getCode(), user.isEnabled(), user.isNonLocked());
+    }
+}
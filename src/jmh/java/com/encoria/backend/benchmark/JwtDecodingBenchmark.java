@@ -0,0 +1,89 @@
+package com.encoria.backend.benchmark;
+
+import com.encoria.backend.config.SecurityConfig;
+import com.encoria.backend.security.CachingJwtDecoder;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jose.jwk.source.ImmutableJWKSet;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bearer token decoding with a locally generated RSA key (no IdP, no network): the verifying decoder
+ * built by {@link SecurityConfig#verifyingJwtDecoder} on every request, versus a repeat token served by
+ * {@link CachingJwtDecoder}. The difference is the CPU the cache saves per request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class JwtDecodingBenchmark {
+
+    private static final String ISSUER = "https://issuer.example.com/";
+    private static final List<String> AUDIENCES = List.of("api");
+
+    private JwtDecoder verifyingDecoder;
+    private JwtDecoder cachingDecoder;
+    private String token;
+
+    @Setup(Level.Trial)
+    public void setUp() throws JOSEException {
+        RSAKey key = new RSAKeyGenerator(2048).keyID(UUID.randomUUID().toString()).generate();
+        verifyingDecoder = SecurityConfig.verifyingJwtDecoder(new ImmutableJWKSet<>(new JWKSet(key.toPublicJWK())),
+                ISSUER, AUDIENCES, List.of("RS256"));
+        cachingDecoder = new CachingJwtDecoder(verifyingDecoder, 50_000, new SimpleMeterRegistry());
+
+        Instant now = Instant.now();
+        JWTClaimsSet claims = new JWTClaimsSet.Builder()
+                .subject("auth0|5000")
+                .issuer(ISSUER)
+                .audience(AUDIENCES)
+                .issueTime(Date.from(now))
+                .expirationTime(Date.from(now.plus(Duration.ofHours(1))))
+                .claim("scope", "openid profile email")
+                .build();
+        SignedJWT jwt = new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(key.getKeyID()).build(), claims);
+        jwt.sign(new RSASSASigner(key));
+        token = jwt.serialize();
+        // Prime the cache so cachedDecode measures the hit path
+        cachingDecoder.decode(token);
+    }
+
+    @Benchmark
+    public Jwt verifyingDecode() {
+        return verifyingDecoder.decode(token);
+    }
+
+    @Benchmark
+    public Jwt cachedDecode() {
+        return cachingDecoder.decode(token);
+    }
+}
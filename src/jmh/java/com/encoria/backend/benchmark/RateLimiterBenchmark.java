@@ -0,0 +1,91 @@
+package com.encoria.backend.benchmark;
+
+import com.encoria.backend.security.RateLimitProperties;
+import com.encoria.backend.security.RateLimiter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-request cost of {@link RateLimiter} (route lookup plus one bucket acquire) with every available core
+ * hammering it. Limits are set high enough that nothing is refused, so each call goes all the way to the CAS.
+ * Compare {@code -t 1} with the default to see what contention adds.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(Threads.MAX)
+public class RateLimiterBenchmark {
+
+    private static final int CLIENTS = 100_000;
+
+    private RateLimiter limiter;
+    private RateLimiter.Route route;
+    private final String[] clients = new String[CLIENTS];
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        limiter = new RateLimiter(new RateLimitProperties(true, CLIENTS * 2L, List.of(
+                new RateLimitProperties.Route("signup", "POST", "/api/users/profile", 5, Duration.ofMinutes(1)),
+                new RateLimitProperties.Route("api", "", "/api/**", 1_000_000_000, Duration.ofSeconds(1)),
+                new RateLimitProperties.Route("public", "", "/public/**", 20, Duration.ofSeconds(1)))),
+                new SimpleMeterRegistry());
+        route = limiter.route("GET", "/api/users/me");
+        for (int i = 0; i < CLIENTS; i++) {
+            clients[i] = "auth0|client-" + i;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Client {
+        String sub;
+
+        @Setup(Level.Trial)
+        public void setUp(ThreadParams thread) {
+            sub = "auth0|thread-" + thread.getThreadIndex();
+        }
+    }
+
+    // Worst case: every thread spends the same client's tokens, so they all CAS the same AtomicLong
+    @Benchmark
+    public long sameClient() {
+        return limiter.tryAcquire(route, "auth0|flood", System.nanoTime());
+    }
+
+    // Typical case: one client per thread, only the Caffeine lookup is shared
+    @Benchmark
+    public long clientPerThread(Client client) {
+        return limiter.tryAcquire(route, client.sub, System.nanoTime());
+    }
+
+    // Many distinct clients, most lookups missing the CPU cache
+    @Benchmark
+    public long manyClients() {
+        return limiter.tryAcquire(route, clients[ThreadLocalRandom.current().nextInt(CLIENTS)], System.nanoTime());
+    }
+
+    // What the filter pays before it even touches a bucket
+    @Benchmark
+    public RateLimiter.Route routeLookup() {
+        return limiter.route("GET", "/api/users/me");
+    }
+}
@@ -0,0 +1,74 @@
+package com.encoria.backend.benchmark;
+
+import com.encoria.backend.model.User;
+import com.encoria.backend.model.UserProfileDto;
+import com.encoria.backend.model.UserProfileView;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson (de)serialization of the user payloads, with an ObjectMapper configured the way Spring Boot
+ * configures the MVC one: the {@link User} entity returned by POST /api/users/profile, the
+ * {@link UserProfileView} projection behind GET /api/users/me, and the {@link UserProfileDto} request body.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SerializationBenchmark {
+
+    private ObjectMapper objectMapper;
+    private User user;
+    private UserProfileView profileView;
+    private UserProfileDto profileDto;
+    private byte[] profileDtoJson;
+
+    @Setup(Level.Trial)
+    public void setUp() throws JsonProcessingException {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        user = BenchmarkUsers.user(5000);
+        profileView = new UserProfileView(user.getUuid(), user.getUsername(), user.getEmail(), user.getFirstName(),
+                user.getLastName(), user.getBirthdate(), user.getPictureUrl(), user.getRole().getCode(),
+                user.getCreatedAt(), user.getUpdatedAt());
+        profileDto = new UserProfileDto(user.getUsername(), user.getEmail(), user.getFirstName(), user.getLastName(),
+                user.getBirthdate(), user.getPictureUrl());
+        profileDtoJson = objectMapper.writeValueAsBytes(profileDto);
+    }
+
+    @Benchmark
+    public byte[] serializeUser() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(user);
+    }
+
+    @Benchmark
+    public byte[] serializeUserProfileView() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(profileView);
+    }
+
+    @Benchmark
+    public byte[] serializeUserProfileDto() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(profileDto);
+    }
+
+    @Benchmark
+    public UserProfileDto deserializeUserProfileDto() throws IOException {
+        return objectMapper.readValue(profileDtoJson, UserProfileDto.class);
+    }
+}
@@ -0,0 +1,82 @@
+package com.encoria.backend.benchmark;
+
+import com.encoria.backend.BackendApplication;
+import com.encoria.backend.service.UserImportService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records per second through {@link UserImportService#importUsers} (chunked validation, conflict queries,
+ * JDBC-batched inserts), against the application on the in-memory H2 database of the "test" profile.
+ * Every invocation imports {@value #RECORDS} new users.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class UserImportBenchmark {
+
+    private static final int RECORDS = 5_000;
+
+    private ConfigurableApplicationContext app;
+    private UserImportService userImportService;
+    private byte[] ndjson;
+    private int batch;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SpringApplication application = new SpringApplication(BackendApplication.class);
+        application.setAdditionalProfiles("test");
+        app = application.run(
+                "--server.port=0",
+                "--spring.datasource.url=jdbc:h2:mem:import-benchmark;MODE=PostgreSQL;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+                "--logging.level.root=WARN");
+        userImportService = app.getBean(UserImportService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        app.close();
+    }
+
+    // New external ids, usernames and emails for every invocation, so nothing conflicts
+    @Setup(Level.Invocation)
+    public void nextBatch() {
+        batch++;
+        StringBuilder lines = new StringBuilder();
+        for (int i = 0; i < RECORDS; i++) {
+            String name = "bench" + batch + "." + i;
+            lines.append("{\"externalAuthId\":\"import|").append(name)
+                    .append("\",\"username\":\"").append(name)
+                    .append("\",\"email\":\"").append(name).append("@example.com")
+                    .append("\",\"firstName\":\"Legacy\",\"lastName\":\"User\",\"birthdate\":\"1990-01-01\"}\n");
+        }
+        ndjson = lines.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public long importUsers() throws Exception {
+        return userImportService.importUsers(new ByteArrayInputStream(ndjson), OutputStream.nullOutputStream()).imported();
+    }
+}
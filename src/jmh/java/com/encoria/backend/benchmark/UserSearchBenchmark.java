@@ -0,0 +1,129 @@
+package com.encoria.backend.benchmark;
+
+import com.encoria.backend.model.User;
+import com.encoria.backend.model.UserIndexEntry;
+import com.encoria.backend.model.UserSearchResult;
+import com.encoria.backend.service.UserSearchIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Typeahead search: {@link UserSearchIndex} versus the {@code searchByPrefix} fallback query
+ * (same SQL shape, run on in-memory H2 over plain JDBC so JPA overhead doesn't blur the comparison).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class UserSearchBenchmark {
+
+    private static final int LIMIT = 10;
+    private static final String LIKE_QUERY = "select uuid, username, first_name, last_name, picture_url from users "
+            + "where lower(username) like ? escape '\\' or lower(first_name) like ? escape '\\' "
+            + "or lower(last_name) like ? escape '\\' order by username limit ?";
+
+    @Param({"100000"})
+    public int users;
+
+    private UserSearchIndex index;
+    private Connection connection;
+    private PreparedStatement likeStatement;
+    private String[] queries;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        index = new UserSearchIndex();
+        connection = DriverManager.getConnection("jdbc:h2:mem:search-benchmark;MODE=PostgreSQL");
+        try (Statement ddl = connection.createStatement()) {
+            ddl.execute("create table users (id bigint primary key, uuid uuid not null, username varchar(255) not null unique, "
+                    + "first_name varchar(255), last_name varchar(255), picture_url varchar(255))");
+        }
+        connection.setAutoCommit(false);
+        try (PreparedStatement insert = connection.prepareStatement("insert into users values (?, ?, ?, ?, ?, ?)")) {
+            for (long id = 1; id <= users; id++) {
+                User user = BenchmarkUsers.user(id);
+                index.index(UserIndexEntry.from(user));
+                insert.setLong(1, id);
+                insert.setObject(2, user.getUuid());
+                insert.setString(3, user.getUsername());
+                insert.setString(4, user.getFirstName());
+                insert.setString(5, user.getLastName());
+                insert.setString(6, user.getPictureUrl());
+                insert.addBatch();
+                if (id % 1000 == 0) {
+                    insert.executeBatch();
+                }
+            }
+            insert.executeBatch();
+        }
+        connection.commit();
+        likeStatement = connection.prepareStatement(LIKE_QUERY);
+
+        // Two and three letter prefixes of real names, like a user typing
+        List<String> prefixes = new ArrayList<>();
+        for (String name : BenchmarkUsers.FIRST_NAMES) {
+            prefixes.add(name.substring(0, 2));
+            prefixes.add(name.substring(0, 3));
+        }
+        for (String name : BenchmarkUsers.LAST_NAMES) {
+            prefixes.add(name.substring(0, 3));
+        }
+        queries = prefixes.toArray(String[]::new);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        connection.close();
+    }
+
+    private String nextQuery() {
+        next = (next + 1) % queries.length;
+        return queries[next];
+    }
+
+    @Benchmark
+    public List<UserSearchResult> prefixIndex() {
+        return index.search(nextQuery(), LIMIT);
+    }
+
+    @Benchmark
+    public List<String> likeQuery() throws SQLException {
+        String pattern = nextQuery().toLowerCase(Locale.ROOT) + "%";
+        likeStatement.setString(1, pattern);
+        likeStatement.setString(2, pattern);
+        likeStatement.setString(3, pattern);
+        likeStatement.setInt(4, LIMIT);
+        List<String> usernames = new ArrayList<>(LIMIT);
+        try (ResultSet rows = likeStatement.executeQuery()) {
+            while (rows.next()) {
+                usernames.add(rows.getString(2));
+            }
+        }
+        return usernames;
+    }
+}
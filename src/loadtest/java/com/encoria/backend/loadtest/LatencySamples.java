@@ -0,0 +1,72 @@
+package com.encoria.backend.loadtest;
+
+import java.util.Arrays;
+
+/**
+ * Raw latencies (nanoseconds) of one endpoint, recorded by a single worker thread.
+ * Every sample is kept, so percentiles are exact; a run of a few minutes is a few MB.
+ */
+final class LatencySamples {
+
+    private long[] samples = new long[1024];
+    private int size;
+    private long errors;
+
+    void record(long nanos) {
+        if (size == samples.length) {
+            samples = Arrays.copyOf(samples, size * 2);
+        }
+        samples[size++] = nanos;
+    }
+
+    void error() {
+        errors++;
+    }
+
+    int size() {
+        return size;
+    }
+
+    long errors() {
+        return errors;
+    }
+
+    // Merges the per-worker samples and sorts them, ready for percentile()
+    static LatencySamples merge(Iterable<LatencySamples> parts) {
+        LatencySamples merged = new LatencySamples();
+        for (LatencySamples part : parts) {
+            if (merged.size + part.size > merged.samples.length) {
+                merged.samples = Arrays.copyOf(merged.samples, Math.max(merged.samples.length * 2, merged.size + part.size));
+            }
+            System.arraycopy(part.samples, 0, merged.samples, merged.size, part.size);
+            merged.size += part.size;
+            merged.errors += part.errors;
+        }
+        Arrays.sort(merged.samples, 0, merged.size);
+        return merged;
+    }
+
+    // Nearest-rank percentile of sorted samples, in nanoseconds (0 when there are none)
+    long percentile(double percentile) {
+        if (size == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(percentile / 100.0 * size);
+        return samples[Math.min(size, Math.max(rank, 1)) - 1];
+    }
+
+    long max() {
+        return size == 0 ? 0 : samples[size - 1];
+    }
+
+    double mean() {
+        if (size == 0) {
+            return 0;
+        }
+        double sum = 0;
+        for (int i = 0; i < size; i++) {
+            sum += samples[i];
+        }
+        return sum / size;
+    }
+}
@@ -0,0 +1,396 @@
+package com.encoria.backend.loadtest;
+
+import com.encoria.backend.BackendApplication;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Self-contained load test: starts the application on in-memory H2, pointed at an embedded {@link OidcStub},
+ * then runs {@code concurrency} closed-loop clients sending a weighted mix of
+ * <ul>
+ *     <li>signup: a fresh subject's {@code POST /api/users/profile},</li>
+ *     <li>me: {@code GET /api/users/me} for a user that client signed up earlier,</li>
+ *     <li>roles: anonymous {@code GET /public/roles}.</li>
+ * </ul>
+ * Nothing is recorded during the warmup. Throughput and p50/p99/p999 latency per endpoint are printed and
+ * written as JSON to {@code --report}.
+ * <p>
+ * {@code --concurrency} and {@code --threading} take lists: the app is started once per threading mode
+ * ({@code platform}, {@code virtual}) and measured at each concurrency level, e.g. to compare both modes
+ * under rising load:
+ * <p>
+ * {@code ./mvnw -Ploadtest test-compile exec:exec -Dloadtest.threading=platform,virtual -Dloadtest.concurrency=50,200,800}
+ * <p>
+ * Arguments the harness doesn't know (e.g. {@code --spring.jpa.show-sql=true}) are passed on to the application.
+ */
+public final class LoadTest {
+
+    enum Endpoint {
+        SIGNUP("POST /api/users/profile"),
+        ME("GET /api/users/me"),
+        ROLES("GET /public/roles");
+
+        final String label;
+
+        Endpoint(String label) {
+            this.label = label;
+        }
+    }
+
+    record Options(Duration duration, Duration warmup, List<Integer> concurrency, List<String> threading,
+                   Map<Endpoint, Integer> mix, Path report, List<String> appArgs) {
+
+        static Options parse(String[] args) {
+            Duration duration = Duration.ofSeconds(60);
+            Duration warmup = Duration.ofSeconds(15);
+            List<Integer> concurrency = List.of(32);
+            List<String> threading = List.of(PLATFORM);
+            Map<Endpoint, Integer> mix = parseMix("signup=1,me=8,roles=3");
+            Path report = Path.of("target", "loadtest-report.json");
+            List<String> appArgs = new ArrayList<>();
+            for (String arg : args) {
+                if (arg.isBlank()) {
+                    continue;
+                }
+                String name = arg.contains("=") ? arg.substring(0, arg.indexOf('=')) : arg;
+                String value = arg.substring(name.length() + (arg.contains("=") ? 1 : 0));
+                switch (name) {
+                    case "--duration" -> duration = DurationStyle.detectAndParse(value);
+                    case "--warmup" -> warmup = DurationStyle.detectAndParse(value);
+                    case "--concurrency" -> concurrency = Arrays.stream(value.split(",")).map(String::trim).map(Integer::valueOf).toList();
+                    case "--threading" -> threading = Arrays.stream(value.split(",")).map(String::trim).toList();
+                    case "--mix" -> mix = parseMix(value);
+                    case "--report" -> report = Path.of(value);
+                    default -> appArgs.add(arg);
+                }
+            }
+            if (concurrency.stream().anyMatch(clients -> clients < 1)) {
+                throw new IllegalArgumentException("--concurrency must be at least 1");
+            }
+            if (!List.of(PLATFORM, VIRTUAL).containsAll(threading)) {
+                throw new IllegalArgumentException("--threading must be platform and/or virtual");
+            }
+            return new Options(duration, warmup, concurrency, threading, mix, report, appArgs);
+        }
+
+        // "signup=1,me=8,roles=3"
+        private static Map<Endpoint, Integer> parseMix(String value) {
+            Map<Endpoint, Integer> mix = new EnumMap<>(Endpoint.class);
+            for (String part : value.split(",")) {
+                String[] weight = part.trim().split("=");
+                mix.put(Endpoint.valueOf(weight[0].trim().toUpperCase(Locale.ROOT)), Integer.parseInt(weight[1].trim()));
+            }
+            if (mix.values().stream().mapToInt(Integer::intValue).sum() <= 0) {
+                throw new IllegalArgumentException("--mix needs at least one positive weight");
+            }
+            return mix;
+        }
+    }
+
+    static final String PLATFORM = "platform";
+    static final String VIRTUAL = "virtual";
+
+    private static final String AUDIENCE = "loadtest-api";
+    private static final Duration TOKEN_TTL = Duration.ofHours(1);
+    private static final AtomicInteger RUNS = new AtomicInteger();
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final Options options;
+    private final OidcStub idp;
+    private final URI baseUri;
+    private final int concurrency;
+    private final HttpClient client;
+    // Keeps subjects and usernames unique across runs against the same database
+    private final String runId = Long.toString(System.currentTimeMillis(), 36) + RUNS.incrementAndGet();
+
+    private volatile boolean recording;
+    private volatile boolean stopped;
+
+    LoadTest(Options options, OidcStub idp, URI baseUri, int concurrency) {
+        this.options = options;
+        this.idp = idp;
+        this.baseUri = baseUri;
+        this.concurrency = concurrency;
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = Options.parse(args);
+        // Devtools is on the test classpath; its restarter would start the app twice
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        boolean virtualThreadsSupported = Runtime.version().feature() >= 21;
+
+        List<Map<String, Object>> runs = new ArrayList<>();
+        try (OidcStub idp = OidcStub.start(AUDIENCE)) {
+            for (String threading : options.threading()) {
+                if (threading.equals(VIRTUAL) && !virtualThreadsSupported) {
+                    System.out.printf("%nJava %d has no virtual threads; the '%s' run uses platform threads%n",
+                            Runtime.version().feature(), VIRTUAL);
+                }
+                try (ConfigurableApplicationContext app = SpringApplication.run(BackendApplication.class,
+                        appArgs(options, idp, threading))) {
+                    URI baseUri = URI.create("http://127.0.0.1:" + ((WebServerApplicationContext) app).getWebServer().getPort());
+                    for (int clients : options.concurrency()) {
+                        Map<String, Object> run = new LinkedHashMap<>();
+                        run.put("threading", threading);
+                        run.put("virtualThreads", threading.equals(VIRTUAL) && virtualThreadsSupported);
+                        run.putAll(new LoadTest(options, idp, baseUri, clients).run());
+                        runs.add(run);
+                    }
+                }
+            }
+
+            Map<String, Object> mix = new LinkedHashMap<>();
+            options.mix().forEach((endpoint, weight) -> mix.put(endpoint.label, weight));
+            Map<String, Object> report = new LinkedHashMap<>();
+            report.put("javaVersion", Runtime.version().toString());
+            report.put("warmupSeconds", options.warmup().toSeconds());
+            report.put("durationSeconds", options.duration().toSeconds());
+            report.put("appArgs", options.appArgs());
+            report.put("mix", mix);
+            report.put("runs", runs);
+            report.put("jwksRequests", idp.jwksRequests());
+
+            Path reportFile = options.report().toAbsolutePath();
+            Files.createDirectories(reportFile.getParent());
+            OBJECT_MAPPER.writerWithDefaultPrettyPrinter().writeValue(reportFile.toFile(), report);
+            System.out.println("Report written to " + reportFile);
+        }
+    }
+
+    // The app on H2 and our stub issuer; command line arguments win over application.yml and its env placeholders
+    private static String[] appArgs(Options options, OidcStub idp, String threading) {
+        List<String> args = new ArrayList<>(List.of(
+                "--server.port=0",
+                "--spring.threads.virtual.enabled=" + threading.equals(VIRTUAL),
+                // A fresh database per app start
+                "--spring.datasource.url=jdbc:h2:mem:loadtest-" + threading + ";MODE=PostgreSQL;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=",
+                "--spring.jpa.hibernate.ddl-auto=none", // Schema from the Flyway migrations, as in production
+                "--spring.jpa.show-sql=false",
+                "--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+                "--spring.security.oauth2.resourceserver.jwt.issuer-uri=" + idp.issuer(),
+                "--spring.security.oauth2.resourceserver.jwt.audiences=" + idp.audience(),
+                "--encoria.security.jwks.cache-file=",
+                "--encoria.security.revocation.bus=local", // Single node on H2, no LISTEN/NOTIFY
+                // Every client is 127.0.0.1 and each one's users are far over their per-user limits
+                "--encoria.security.rate-limit.enabled=false",
+                // Per-request DEBUG/TRACE logging from application.yml would dominate the measurements
+                "--logging.level.root=WARN",
+                "--logging.level.org.springframework.security=WARN",
+                "--logging.level.org.springframework.security.oauth2.server.resource=WARN",
+                "--logging.level.com.nimbusds.jose.proc=WARN",
+                "--logging.level.com.nimbusds.jose.jwk=WARN",
+                "--logging.level.com.nimbusds.oauth2.sdk=WARN"
+        ));
+        args.addAll(options.appArgs());
+        return args.toArray(String[]::new);
+    }
+
+    Map<String, Object> run() throws InterruptedException {
+        List<Worker> workers = new ArrayList<>(concurrency);
+        List<Thread> threads = new ArrayList<>(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            Worker worker = new Worker(i);
+            workers.add(worker);
+            Thread thread = new Thread(worker, "loadtest-" + i);
+            threads.add(thread);
+            thread.start();
+        }
+
+        System.out.printf("%nWarming up for %s with %d clients against %s%n", options.warmup(), concurrency, baseUri);
+        Thread.sleep(options.warmup().toMillis());
+        System.out.printf("Measuring for %s%n", options.duration());
+        Instant startedAt = Instant.now();
+        long started = System.nanoTime();
+        recording = true;
+        Thread.sleep(options.duration().toMillis());
+        recording = false;
+        double seconds = (System.nanoTime() - started) / 1e9;
+        stopped = true;
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        return results(workers, startedAt, seconds);
+    }
+
+    private Map<String, Object> results(List<Worker> workers, Instant startedAt, double seconds) {
+        Map<String, Object> endpoints = new LinkedHashMap<>();
+        long totalRequests = 0;
+        long totalErrors = 0;
+        System.out.printf("%n%-26s %10s %8s %10s %9s %9s %9s %9s%n",
+                "endpoint", "requests", "errors", "req/s", "p50 ms", "p99 ms", "p999 ms", "max ms");
+        for (Endpoint endpoint : Endpoint.values()) {
+            LatencySamples samples = LatencySamples.merge(workers.stream().map(worker -> worker.samples.get(endpoint)).toList());
+            totalRequests += samples.size();
+            totalErrors += samples.errors();
+
+            Map<String, Object> latency = new LinkedHashMap<>();
+            latency.put("p50", millis(samples.percentile(50)));
+            latency.put("p99", millis(samples.percentile(99)));
+            latency.put("p999", millis(samples.percentile(99.9)));
+            latency.put("max", millis(samples.max()));
+            latency.put("mean", millis(samples.mean()));
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("requests", samples.size());
+            result.put("errors", samples.errors());
+            result.put("throughputPerSecond", round(samples.size() / seconds));
+            result.put("latencyMs", latency);
+            endpoints.put(endpoint.label, result);
+
+            System.out.printf("%-26s %10d %8d %10.1f %9.3f %9.3f %9.3f %9.3f%n", endpoint.label, samples.size(),
+                    samples.errors(), samples.size() / seconds, latency.get("p50"), latency.get("p99"),
+                    latency.get("p999"), latency.get("max"));
+        }
+
+        Map<String, Object> total = new LinkedHashMap<>();
+        total.put("requests", totalRequests);
+        total.put("errors", totalErrors);
+        total.put("throughputPerSecond", round(totalRequests / seconds));
+
+        Map<String, Object> results = new LinkedHashMap<>();
+        results.put("concurrency", concurrency);
+        results.put("startedAt", startedAt.toString());
+        results.put("durationSeconds", round(seconds));
+        results.put("endpoints", endpoints);
+        results.put("total", total);
+        return results;
+    }
+
+    private static double millis(double nanos) {
+        return Math.round(nanos / 1_000.0) / 1_000.0;
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 10) / 10.0;
+    }
+
+    /**
+     * One closed-loop client: sends the next request as soon as the previous one completes.
+     * Each client only calls /me for users it signed up itself, so clients share no state.
+     */
+    private final class Worker implements Runnable {
+
+        private final int number;
+        private final Random random;
+        private final Endpoint[] weighted;
+        private final List<String> tokens = new ArrayList<>();
+        private final Map<Endpoint, LatencySamples> samples = new EnumMap<>(Endpoint.class);
+        private int signups;
+
+        Worker(int number) {
+            this.number = number;
+            this.random = new Random(number);
+            List<Endpoint> slots = new ArrayList<>();
+            options.mix().forEach((endpoint, weight) -> {
+                for (int i = 0; i < weight; i++) {
+                    slots.add(endpoint);
+                }
+            });
+            this.weighted = slots.toArray(Endpoint[]::new);
+            for (Endpoint endpoint : Endpoint.values()) {
+                samples.put(endpoint, new LatencySamples());
+            }
+        }
+
+        @Override
+        public void run() {
+            while (!stopped) {
+                Endpoint endpoint = weighted[random.nextInt(weighted.length)];
+                if (endpoint == Endpoint.ME && tokens.isEmpty()) {
+                    endpoint = Endpoint.SIGNUP;
+                }
+                // Tokens are minted before the clock starts; signing is the IdP's cost, not ours
+                String signupToken = endpoint == Endpoint.SIGNUP ? nextSignupToken() : null;
+                HttpRequest request = switch (endpoint) {
+                    case SIGNUP -> signupRequest(signupToken);
+                    case ME -> HttpRequest.newBuilder(baseUri.resolve("/api/users/me"))
+                            .header("Authorization", "Bearer " + tokens.get(random.nextInt(tokens.size())))
+                            .GET().build();
+                    case ROLES -> HttpRequest.newBuilder(baseUri.resolve("/public/roles")).GET().build();
+                };
+
+                long started = System.nanoTime();
+                int status;
+                try {
+                    status = client.send(request, HttpResponse.BodyHandlers.ofByteArray()).statusCode();
+                } catch (IOException e) {
+                    status = -1;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                long elapsed = System.nanoTime() - started;
+
+                if (endpoint == Endpoint.SIGNUP && status == 201) {
+                    tokens.add(signupToken);
+                }
+                if (recording) {
+                    if (status >= 200 && status < 400) {
+                        samples.get(endpoint).record(elapsed);
+                    } else {
+                        samples.get(endpoint).error();
+                    }
+                }
+            }
+        }
+
+        private String nextSignupToken() {
+            signups++;
+            return idp.mint("loadtest|" + runId + "-" + number + "-" + signups, email(), TOKEN_TTL);
+        }
+
+        private String username() {
+            return "lt" + runId + "w" + number + "n" + signups;
+        }
+
+        private String email() {
+            return username() + "@loadtest.example.com";
+        }
+
+        private HttpRequest signupRequest(String token) {
+            Map<String, Object> profile = new LinkedHashMap<>();
+            profile.put("username", username());
+            profile.put("email", email());
+            profile.put("firstName", "Load");
+            profile.put("lastName", "Test " + number);
+            profile.put("birthdate", "1990-01-01");
+            try {
+                return HttpRequest.newBuilder(baseUri.resolve("/api/users/profile"))
+                        .header("Authorization", "Bearer " + token)
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofByteArray(OBJECT_MAPPER.writeValueAsBytes(profile)))
+                        .build();
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.encoria.backend.loadtest;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stand-in for the Auth0/Okta tenant: serves OIDC discovery and the JWK set on a local port and mints
+ * RS256 access tokens signed with a key generated at startup. The app is pointed at {@link #issuer()} and
+ * goes through its normal discovery and key caching path.
+ */
+final class OidcStub implements AutoCloseable {
+
+    private final HttpServer server;
+    private final RSAKey key;
+    private final RSASSASigner signer;
+    private final String issuer;
+    private final String audience;
+    private final AtomicLong jwksRequests = new AtomicLong();
+
+    private OidcStub(HttpServer server, RSAKey key, String audience) throws JOSEException {
+        this.server = server;
+        this.key = key;
+        this.signer = new RSASSASigner(key);
+        this.issuer = "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+        this.audience = audience;
+    }
+
+    static OidcStub start(String audience) throws IOException, JOSEException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        RSAKey key = new RSAKeyGenerator(2048).keyID(UUID.randomUUID().toString()).generate();
+        OidcStub stub = new OidcStub(server, key, audience);
+        server.createContext("/.well-known/openid-configuration", exchange -> stub.respond(exchange,
+                "{\"issuer\":\"" + stub.issuer + "\",\"jwks_uri\":\"" + stub.issuer + ".well-known/jwks.json\"}"));
+        server.createContext("/.well-known/jwks.json", exchange -> {
+            stub.jwksRequests.incrementAndGet();
+            stub.respond(exchange, new JWKSet(key.toPublicJWK()).toString());
+        });
+        server.start();
+        return stub;
+    }
+
+    String issuer() {
+        return issuer;
+    }
+
+    String audience() {
+        return audience;
+    }
+
+    long jwksRequests() {
+        return jwksRequests.get();
+    }
+
+    /**
+     * An access token for {@code subject}, shaped like the ones our IdP issues (iss, aud, sub, email, exp).
+     */
+    String mint(String subject, String email, Duration ttl) {
+        Instant now = Instant.now();
+        JWTClaimsSet claims = new JWTClaimsSet.Builder()
+                .issuer(issuer)
+                .audience(audience)
+                .subject(subject)
+                .claim("email", email)
+                .claim("scope", "openid profile email")
+                .issueTime(Date.from(now))
+                .expirationTime(Date.from(now.plus(ttl)))
+                .build();
+        SignedJWT jwt = new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(key.getKeyID()).build(), claims);
+        try {
+            jwt.sign(signer);
+        } catch (JOSEException e) {
+            throw new IllegalStateException("Couldn't sign token", e);
+        }
+        return jwt.serialize();
+    }
+
+    private void respond(HttpExchange exchange, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
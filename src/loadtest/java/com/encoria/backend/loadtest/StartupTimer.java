@@ -0,0 +1,279 @@
+package com.encoria.backend.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Time to first request of the packaged application, measured the way the Dockerfile runs it: the jar is extracted
+ * (java -Djarmode=tools), CDS archives are produced by training runs, then the app is started {@code --runs} times
+ * per mode in a fresh JVM, each time polling until
+ * <ul>
+ *     <li>{@code GET /public/roles} answers 200 (first request), then</li>
+ *     <li>{@code GET /api/users/me} with a fresh token answers (first authenticated request: JWT, JWKS, database).</li>
+ * </ul>
+ * Modes: {@code plain}, {@code cds} (-XX:SharedArchiveFile), {@code aot} (-Dspring.aot.enabled=true) and
+ * {@code aot-cds}. The aot modes need a jar built with the aot profile, and its bean conditions match these runs:
+ * <p>
+ * {@code ENCORIA_REVOCATION_BUS=local ./mvnw -Paot package -DskipTests}<br>
+ * {@code ./mvnw -Ploadtest test-compile exec:exec@startup [-Dstartup.runs=5] [-Dstartup.modes=plain,aot-cds]}
+ * <p>
+ * Each app's output (with the StartupReport timeline) is kept next to the report, in {@code <report dir>/startup}.
+ */
+public final class StartupTimer {
+
+    static final List<String> MODES = List.of("plain", "cds", "aot", "aot-cds");
+
+    private static final String AUDIENCE = "startup-api";
+    private static final Duration TIMEOUT = Duration.ofMinutes(2);
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    record Options(Path jar, int runs, List<String> modes, Path report, List<String> appArgs) {
+
+        static Options parse(String[] args) throws IOException {
+            Path jar = null;
+            int runs = 5;
+            List<String> modes = MODES;
+            Path report = Path.of("target", "startup-report.json");
+            List<String> appArgs = new ArrayList<>();
+            for (String arg : args) {
+                if (arg.isBlank()) {
+                    continue;
+                }
+                String name = arg.contains("=") ? arg.substring(0, arg.indexOf('=')) : arg;
+                String value = arg.substring(name.length() + (arg.contains("=") ? 1 : 0));
+                switch (name) {
+                    case "--jar" -> jar = value.isBlank() ? null : Path.of(value);
+                    case "--runs" -> runs = Integer.parseInt(value);
+                    case "--modes" -> modes = Arrays.stream(value.split(",")).map(String::trim).toList();
+                    case "--report" -> report = Path.of(value);
+                    default -> appArgs.add(arg);
+                }
+            }
+            if (runs < 1) {
+                throw new IllegalArgumentException("--runs must be at least 1");
+            }
+            if (!MODES.containsAll(modes)) {
+                throw new IllegalArgumentException("--modes must be among " + MODES);
+            }
+            return new Options(jar != null ? jar : packagedJar(), runs, modes, report, appArgs);
+        }
+
+        // The one executable jar in target/ (not the .jar.original kept by repackage)
+        private static Path packagedJar() throws IOException {
+            try (Stream<Path> files = Files.list(Path.of("target"))) {
+                List<Path> jars = files.filter(file -> file.getFileName().toString().endsWith(".jar")).toList();
+                if (jars.size() != 1) {
+                    throw new IllegalArgumentException("Expected one jar in target/, found " + jars + "; pass --jar");
+                }
+                return jars.get(0);
+            }
+        }
+    }
+
+    private final Options options;
+    private final OidcStub idp;
+    private final Path workDir;
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(1))
+            .build();
+
+    StartupTimer(Options options, OidcStub idp, Path workDir) {
+        this.options = options;
+        this.idp = idp;
+        this.workDir = workDir;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = Options.parse(args);
+        Path reportFile = options.report().toAbsolutePath();
+        Path workDir = reportFile.getParent().resolve("startup");
+        Files.createDirectories(workDir);
+
+        try (OidcStub idp = OidcStub.start(AUDIENCE)) {
+            StartupTimer timer = new StartupTimer(options, idp, workDir);
+            Path app = timer.extract();
+            Map<String, Object> modes = new LinkedHashMap<>();
+            for (String mode : options.modes()) {
+                modes.put(mode, timer.measure(app, mode));
+            }
+
+            Map<String, Object> report = new LinkedHashMap<>();
+            report.put("javaVersion", Runtime.version().toString());
+            report.put("availableProcessors", Runtime.getRuntime().availableProcessors());
+            report.put("jar", options.jar().toAbsolutePath().toString());
+            report.put("appArgs", options.appArgs());
+            report.put("modes", modes);
+            OBJECT_MAPPER.writerWithDefaultPrettyPrinter().writeValue(reportFile.toFile(), report);
+            System.out.println("Report written to " + reportFile);
+        }
+    }
+
+    // Same layout as the Dockerfile: app.jar plus lib/, which CDS needs (it can't archive classes from nested jars)
+    private Path extract() throws IOException, InterruptedException {
+        Path destination = workDir.resolve("app");
+        run("extract", workDir, List.of(java(), "-Djarmode=tools", "-jar", options.jar().toAbsolutePath().toString(),
+                "extract", "--force", "--destination", destination.toString()));
+        String jarName = options.jar().getFileName().toString();
+        Files.move(destination.resolve(jarName), destination.resolve("app.jar"), StandardCopyOption.REPLACE_EXISTING);
+        return destination;
+    }
+
+    private Map<String, Object> measure(Path app, String mode) throws IOException, InterruptedException {
+        List<String> jvmArgs = new ArrayList<>();
+        if (mode.startsWith("aot")) {
+            jvmArgs.add("-Dspring.aot.enabled=true");
+        }
+        if (mode.endsWith("cds")) {
+            Path archive = app.resolve(mode + ".jsa");
+            // Training run: refreshes the context, exits, and dumps every class it loaded
+            List<String> training = new ArrayList<>(List.of(java(), "-XX:ArchiveClassesAtExit=" + archive));
+            training.addAll(jvmArgs);
+            training.addAll(List.of("-Dspring.context.exit=onRefresh", "-jar", "app.jar"));
+            training.addAll(appArgs(freePort()));
+            run(mode + "-training", app, training);
+            jvmArgs.add("-XX:SharedArchiveFile=" + archive);
+        }
+
+        List<Long> firstRequest = new ArrayList<>();
+        List<Long> firstAuthenticated = new ArrayList<>();
+        for (int i = 1; i <= options.runs(); i++) {
+            int port = freePort();
+            List<String> command = new ArrayList<>(List.of(java()));
+            command.addAll(jvmArgs);
+            command.addAll(List.of("-jar", "app.jar"));
+            command.addAll(appArgs(port));
+
+            Path log = workDir.resolve(mode + "-" + i + ".log");
+            long launched = System.nanoTime();
+            Process process = new ProcessBuilder(command).directory(app.toFile())
+                    .redirectErrorStream(true).redirectOutput(log.toFile()).start();
+            try {
+                URI base = URI.create("http://127.0.0.1:" + port);
+                awaitResponse(process, HttpRequest.newBuilder(base.resolve("/public/roles")).build(), 200, log);
+                firstRequest.add(elapsedMillis(launched));
+                String token = idp.mint("auth0|startup-" + UUID.randomUUID(), "startup@example.com", Duration.ofMinutes(5));
+                awaitResponse(process, HttpRequest.newBuilder(base.resolve("/api/users/me"))
+                        .header("Authorization", "Bearer " + token).build(), -1, log);
+                firstAuthenticated.add(elapsedMillis(launched));
+            } finally {
+                process.destroy();
+                if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                    process.destroyForcibly().waitFor();
+                }
+            }
+            System.out.printf("%-8s run %d: first request %5d ms, first authenticated request %5d ms%n",
+                    mode, i, firstRequest.get(i - 1), firstAuthenticated.get(i - 1));
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("jvmArgs", jvmArgs);
+        result.put("firstRequestMillis", summary(firstRequest));
+        result.put("firstAuthenticatedRequestMillis", summary(firstAuthenticated));
+        return result;
+    }
+
+    // Polls until the app answers with {@code status} (any status below 500 when -1)
+    private void awaitResponse(Process process, HttpRequest request, int status, Path log) throws IOException, InterruptedException {
+        long deadline = System.nanoTime() + TIMEOUT.toNanos();
+        while (System.nanoTime() < deadline) {
+            if (!process.isAlive()) {
+                throw new IllegalStateException("The application exited with " + process.exitValue() + ", see " + log);
+            }
+            try {
+                int actual = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                if (status == -1 ? actual < 500 : actual == status) {
+                    return;
+                }
+            } catch (ConnectException e) {
+                // Not listening yet
+            }
+            Thread.sleep(5);
+        }
+        throw new IllegalStateException("No answer from " + request.uri() + " within " + TIMEOUT + ", see " + log);
+    }
+
+    // The app on a file H2 database (migrated by the first start, as a production database would be) and the stub issuer
+    private List<String> appArgs(int port) {
+        List<String> args = new ArrayList<>(List.of(
+                "--server.port=" + port,
+                "--spring.datasource.url=jdbc:h2:file:" + workDir.resolve("db").toAbsolutePath() + ";MODE=PostgreSQL",
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=",
+                "--spring.jpa.hibernate.ddl-auto=none",
+                "--spring.jpa.show-sql=false",
+                "--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+                "--spring.security.oauth2.resourceserver.jwt.issuer-uri=" + idp.issuer(),
+                "--spring.security.oauth2.resourceserver.jwt.audiences=" + idp.audience(),
+                "--encoria.security.jwks.cache-file=",
+                "--encoria.security.revocation.bus=local", // Also what the aot jar must be built with
+                "--encoria.users.pictures.dir=" + workDir.resolve("pictures").toAbsolutePath(),
+                // Per-request DEBUG/TRACE logging from application.yml, but keep the startup timeline
+                "--logging.level.root=WARN",
+                "--logging.level.org.springframework.security=WARN",
+                "--logging.level.org.springframework.security.oauth2.server.resource=WARN",
+                "--logging.level.com.nimbusds.jose.proc=WARN",
+                "--logging.level.com.nimbusds.jose.jwk=WARN",
+                "--logging.level.com.nimbusds.oauth2.sdk=WARN",
+                "--logging.level.com.encoria.backend.config.StartupReport=INFO"
+        ));
+        args.addAll(options.appArgs());
+        return args;
+    }
+
+    private void run(String name, Path directory, List<String> command) throws IOException, InterruptedException {
+        Path log = workDir.resolve(name + ".log");
+        Process process = new ProcessBuilder(command).directory(directory.toFile())
+                .redirectErrorStream(true).redirectOutput(log.toFile()).start();
+        if (!process.waitFor(TIMEOUT.toSeconds(), TimeUnit.SECONDS)) {
+            process.destroyForcibly().waitFor();
+            throw new IllegalStateException(name + " timed out, see " + log);
+        }
+        if (process.exitValue() != 0) {
+            throw new IllegalStateException(name + " failed with " + process.exitValue() + ", see " + log);
+        }
+    }
+
+    private static Map<String, Object> summary(List<Long> millis) {
+        List<Long> sorted = millis.stream().sorted().toList();
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("median", sorted.get(sorted.size() / 2));
+        summary.put("min", sorted.get(0));
+        summary.put("max", sorted.get(sorted.size() - 1));
+        summary.put("runs", millis);
+        return summary;
+    }
+
+    private static long elapsedMillis(long since) {
+        return (System.nanoTime() - since) / 1_000_000;
+    }
+
+    private static String java() {
+        return Path.of(System.getProperty("java.home"), "bin", "java").toString();
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.encoria.backend.config;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * DataSource wrapper that caps how many threads may hold or wait for a pooled connection at once.
+ * Past {@code maxInFlight}, {@code getConnection()} fails right away instead of queueing in the pool until
+ * its connection timeout, so a burst of requests turns into fast 503s rather than a pile-up in front of the database.
+ * The permit is returned when the connection is closed (handed back to the pool).
+ */
+public class BoundedWaitDataSource extends DelegatingDataSource {
+
+    private final Semaphore permits;
+    private final int maxInFlight;
+    private final LongAdder rejected = new LongAdder();
+
+    public BoundedWaitDataSource(DataSource target, int maxInFlight) {
+        super(target);
+        this.permits = new Semaphore(maxInFlight);
+        this.maxInFlight = maxInFlight;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        acquire();
+        try {
+            return releasingOnClose(obtainTargetDataSource().getConnection());
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        acquire();
+        try {
+            return releasingOnClose(obtainTargetDataSource().getConnection(username, password));
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    // Threads currently holding or waiting for a connection
+    public int inFlight() {
+        return maxInFlight - permits.availablePermits();
+    }
+
+    public int maxInFlight() {
+        return maxInFlight;
+    }
+
+    // getConnection() calls turned away since startup
+    public long rejected() {
+        return rejected.sum();
+    }
+
+    private void acquire() throws SQLException {
+        if (!permits.tryAcquire()) {
+            rejected.increment();
+            throw new SQLTransientConnectionException(
+                    "Too many threads holding or waiting for a database connection (limit " + maxInFlight + ")");
+        }
+    }
+
+    private Connection releasingOnClose(Connection connection) {
+        AtomicBoolean released = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    } finally {
+                        // close() may be called more than once; only the first one gives the permit back
+                        if (method.getName().equals("close") && released.compareAndSet(false, true)) {
+                            permits.release();
+                        }
+                    }
+                });
+    }
+}
@@ -0,0 +1,132 @@
+package com.encoria.backend.config;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+@Slf4j
+@Configuration
+public class DataSourceConfig {
+
+    // Replica routing is only set up when at least one replica URL is configured
+    private static final String REPLICAS_CONFIGURED = "'${encoria.datasource.replicas.urls:}'.trim() != ''";
+
+    // On platform threads Tomcat's pool (200 threads) bounds how many requests can wait for a connection.
+    // On virtual threads (spring.threads.virtual.enabled) nothing does, so the Hikari pool gets a bounded waiting room.
+    @Bean
+    @ConditionalOnThreading(Threading.VIRTUAL)
+    public static BeanPostProcessor connectionBulkhead(@Value("${encoria.datasource.max-waiting:200}") int maxWaiting) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof HikariDataSource hikari) {
+                    int maxInFlight = hikari.getMaximumPoolSize() + maxWaiting;
+                    log.info("Virtual threads enabled: at most {} threads may hold or wait for one of {} connections",
+                            maxInFlight, hikari.getMaximumPoolSize());
+                    return new BoundedWaitDataSource(hikari, maxInFlight);
+                }
+                return bean;
+            }
+        };
+    }
+
+    // Saturation of the waiting room above; the pool itself is covered by Boot's hikaricp.* meters
+    @Bean
+    @ConditionalOnThreading(Threading.VIRTUAL)
+    public MeterBinder connectionBulkheadMetrics(DataSource dataSource) throws SQLException {
+        BoundedWaitDataSource bulkhead = dataSource.unwrap(BoundedWaitDataSource.class);
+        return registry -> {
+            Gauge.builder("encoria.datasource.in-flight", bulkhead, BoundedWaitDataSource::inFlight)
+                    .description("Threads holding or waiting for a database connection")
+                    .register(registry);
+            Gauge.builder("encoria.datasource.max-in-flight", bulkhead, BoundedWaitDataSource::maxInFlight)
+                    .register(registry);
+            FunctionCounter.builder("encoria.datasource.rejected", bulkhead, BoundedWaitDataSource::rejected)
+                    .description("Connection requests failed fast because too many threads were waiting")
+                    .register(registry);
+        };
+    }
+
+    // --- Read replicas (encoria.datasource.replicas.urls) ---
+    // Replaces Boot's single pool with: the primary pool (spring.datasource.*), one pool per replica, and
+    // a routing "dataSource" in front of them that JPA and everything else use.
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    @ConditionalOnExpression(REPLICAS_CONFIGURED)
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    // Same settings and credentials as the primary pool, read-only, one pool per URL. The pools aren't beans, so
+    // connectionBulkhead() doesn't see them: on virtual threads each gets its own waiting room here.
+    @Bean(destroyMethod = "close")
+    @ConditionalOnExpression(REPLICAS_CONFIGURED)
+    public ReplicaDataSource replicaDataSource(@Qualifier("primaryDataSource") DataSource primaryDataSource,
+                                               @Value("${encoria.datasource.replicas.urls}") List<String> urls,
+                                               @Value("${encoria.datasource.max-waiting:200}") int maxWaiting,
+                                               Environment environment,
+                                               MeterRegistry meterRegistry) throws SQLException {
+        HikariDataSource primaryPool = primaryDataSource.unwrap(HikariDataSource.class);
+        List<DataSource> replicas = new ArrayList<>(urls.size());
+        for (int i = 0; i < urls.size(); i++) {
+            HikariConfig config = new HikariConfig();
+            primaryPool.copyStateTo(config);
+            config.setJdbcUrl(urls.get(i).trim());
+            config.setPoolName("replica-" + (i + 1));
+            config.setReadOnly(true);
+            // A replica that is down at startup must not keep the app from starting, reads fall back to the primary
+            config.setInitializationFailTimeout(-1);
+            config.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+            HikariDataSource pool = new HikariDataSource(config);
+            // A full replica fails fast and ReplicaDataSource moves on to the next one (the primary has its own bulkhead)
+            replicas.add(Threading.VIRTUAL.isActive(environment)
+                    ? new BoundedWaitDataSource(pool, pool.getMaximumPoolSize() + maxWaiting)
+                    : pool);
+        }
+        log.info("Routing read-only transactions to {} replica(s)", replicas.size());
+        return new ReplicaDataSource(replicas, primaryDataSource);
+    }
+
+    @Bean
+    @Primary
+    @ConditionalOnExpression(REPLICAS_CONFIGURED)
+    public DataSource dataSource(@Qualifier("primaryDataSource") DataSource primaryDataSource,
+                                 ReplicaDataSource replicaDataSource) {
+        return readWriteRouting(primaryDataSource, replicaDataSource);
+    }
+
+    /**
+     * Connections are only fetched on the first statement, by which time the transaction manager has marked
+     * them read-only for {@code @Transactional(readOnly = true)} (and Spring Data's read-only repository methods):
+     * those go to {@code readOnly}, everything else to {@code primary}.
+     */
+    public static LazyConnectionDataSourceProxy readWriteRouting(DataSource primary, DataSource readOnly) {
+        LazyConnectionDataSourceProxy routing = new LazyConnectionDataSourceProxy(primary);
+        routing.setReadOnlyDataSource(readOnly);
+        return routing;
+    }
+}
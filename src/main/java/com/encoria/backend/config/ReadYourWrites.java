@@ -0,0 +1,183 @@
+package com.encoria.backend.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseCookie;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.function.Supplier;
+
+/**
+ * Read-your-writes guard for the replica routing in {@link DataSourceConfig}.
+ * Subjects that just wrote (e.g. signed up) have their reads pinned to the primary for {@code window}, so a lagging
+ * replica can't hand back the pre-write state (an "unregistered" user right after signup would be rejected by
+ * profileCompletionFilter). Without replicas pinning is a no-op.
+ * <p>
+ * The write is remembered in two places: in this node's memory, and in a cookie on the response that wrote,
+ * signed (HMAC-SHA256 over subject and expiry) with {@code read-your-writes-secret}. Any node sharing the secret
+ * honours the cookie, so the next request doesn't bounce off a replica when it lands on another node.
+ */
+@Component
+public class ReadYourWrites {
+
+    public static final String COOKIE_NAME = "encoria_ryw";
+
+    private static final String HMAC = "HmacSHA256";
+    private static final ThreadLocal<Boolean> PINNED = new ThreadLocal<>();
+
+    private final Duration window;
+    private final SecretKeySpec key;
+    private final Cache<String, Boolean> recentWriters;
+
+    public ReadYourWrites(@Value("${encoria.datasource.replicas.read-your-writes-window:5s}") Duration window,
+                          @Value("${encoria.datasource.replicas.read-your-writes-secret:}") String secret) {
+        this.window = window;
+        this.key = new SecretKeySpec(secret.isBlank() ? randomSecret() : secret.getBytes(StandardCharsets.UTF_8), HMAC);
+        this.recentWriters = Caffeine.newBuilder()
+                .maximumSize(100_000)
+                .expireAfterWrite(window)
+                .build();
+    }
+
+    // Only this node can verify its cookies then; fine for a single node, which is all it can be without the secret
+    private static byte[] randomSecret() {
+        byte[] secret = new byte[32];
+        new SecureRandom().nextBytes(secret);
+        return secret;
+    }
+
+    /**
+     * Open-ended pin for the current thread, released by {@link Pin#close()}.
+     */
+    public interface Pin extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    // Start the window once the surrounding transaction commits (falls back to right away)
+    public void recordWriteAfterCommit(String externalAuthId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            recordWrite(externalAuthId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                recordWrite(externalAuthId);
+            }
+        });
+    }
+
+    private void recordWrite(String externalAuthId) {
+        recentWriters.put(externalAuthId, Boolean.TRUE);
+        // Runs before the controller returns, so the response isn't committed yet
+        if (RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes
+                && attributes.getResponse() != null) {
+            HttpServletResponse response = attributes.getResponse();
+            long expires = System.currentTimeMillis() + window.toMillis();
+            ResponseCookie cookie = ResponseCookie.from(COOKIE_NAME, expires + "." + sign(externalAuthId, expires))
+                    .httpOnly(true)
+                    .secure(attributes.getRequest().isSecure())
+                    .sameSite("Strict")
+                    .path("/")
+                    .maxAge(window)
+                    .build();
+            response.addHeader(HttpHeaders.SET_COOKIE, cookie.toString());
+        }
+    }
+
+    // Wrote within the window: through this node, or through any node according to the current request's cookie
+    public boolean isRecentWriter(String externalAuthId) {
+        return recentWriters.getIfPresent(externalAuthId) != null || hasWriteCookie(externalAuthId);
+    }
+
+    private boolean hasWriteCookie(String externalAuthId) {
+        if (!(RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes)) {
+            return false;
+        }
+        HttpServletRequest request = attributes.getRequest();
+        if (request.getCookies() == null) {
+            return false;
+        }
+        for (Cookie cookie : request.getCookies()) {
+            if (COOKIE_NAME.equals(cookie.getName()) && isValid(cookie.getValue(), externalAuthId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // "<expires>.<signature>", signed for this subject and not expired
+    private boolean isValid(String value, String externalAuthId) {
+        int dot = value.indexOf('.');
+        if (dot <= 0) {
+            return false;
+        }
+        long expires;
+        try {
+            expires = Long.parseLong(value.substring(0, dot));
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        if (expires < System.currentTimeMillis()) {
+            return false;
+        }
+        byte[] expected = sign(externalAuthId, expires).getBytes(StandardCharsets.US_ASCII);
+        return MessageDigest.isEqual(expected, value.substring(dot + 1).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private String sign(String externalAuthId, long expires) {
+        try {
+            Mac mac = Mac.getInstance(HMAC);
+            mac.init(key);
+            byte[] signature = mac.doFinal((externalAuthId + '\n' + expires).getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(signature);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC-SHA256 unavailable", e);
+        }
+    }
+
+    // Runs the read on the primary if the subject wrote within the window, else wherever it would go anyway
+    public <T> T read(String externalAuthId, Supplier<T> read) {
+        if (!isRecentWriter(externalAuthId)) {
+            return read.get();
+        }
+        try (Pin pin = pinToPrimary()) {
+            return read.get();
+        }
+    }
+
+    public static Pin pinToPrimary() {
+        Boolean previous = PINNED.get();
+        PINNED.set(Boolean.TRUE);
+        return () -> {
+            if (previous == null) {
+                PINNED.remove();
+            } else {
+                PINNED.set(previous);
+            }
+        };
+    }
+
+    // Read by ReplicaDataSource when a read-only transaction asks for a connection
+    static boolean isPinnedToPrimary() {
+        return PINNED.get() != null;
+    }
+}
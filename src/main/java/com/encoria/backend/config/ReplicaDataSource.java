@@ -0,0 +1,84 @@
+package com.encoria.backend.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Read-only side of the routing set up in {@link DataSourceConfig}: hands out connections from the replica pools
+ * round-robin. Threads pinned by {@link ReadYourWrites} read from the primary instead. A replica that can't
+ * provide a connection is skipped, and if none can, the read falls back to the primary.
+ */
+@Slf4j
+public class ReplicaDataSource extends AbstractDataSource implements Closeable {
+
+    private final List<DataSource> replicas;
+    private final DataSource primary;
+    private final AtomicInteger next = new AtomicInteger();
+
+    public ReplicaDataSource(List<DataSource> replicas, DataSource primary) {
+        if (replicas.isEmpty()) {
+            throw new IllegalArgumentException("At least one replica is required.");
+        }
+        this.replicas = List.copyOf(replicas);
+        this.primary = primary;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (ReadYourWrites.isPinnedToPrimary()) {
+            return primary.getConnection();
+        }
+        int start = Math.floorMod(next.getAndIncrement(), replicas.size());
+        for (int i = 0; i < replicas.size(); i++) {
+            DataSource replica = replicas.get((start + i) % replicas.size());
+            try {
+                return replica.getConnection();
+            } catch (SQLException e) {
+                log.warn("Replica {} unavailable: {}", describe(replica), e.getMessage());
+            }
+        }
+        log.warn("No replica available, reading from the primary");
+        return primary.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new UnsupportedOperationException("Replica connections use the pool credentials");
+    }
+
+    public int size() {
+        return replicas.size();
+    }
+
+    @Override
+    public void close() {
+        for (DataSource replica : replicas) {
+            HikariDataSource hikari = pool(replica);
+            if (hikari != null) {
+                hikari.close();
+            }
+        }
+    }
+
+    private static String describe(DataSource replica) {
+        HikariDataSource hikari = pool(replica);
+        return hikari != null ? hikari.getPoolName() : replica.toString();
+    }
+
+    // The Hikari pool behind a replica, also when it is wrapped (e.g. in a BoundedWaitDataSource)
+    private static HikariDataSource pool(DataSource replica) {
+        try {
+            return replica.isWrapperFor(HikariDataSource.class) ? replica.unwrap(HikariDataSource.class) : null;
+        } catch (SQLException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.encoria.backend.config;
+
+import com.encoria.backend.security.LocalRevocationBus;
+import com.encoria.backend.security.PostgresRevocationBus;
+import com.encoria.backend.security.RevocationBus;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+
+/**
+ * The {@link RevocationBus} behind RevocationSet, picked by {@code encoria.security.revocation.bus}:
+ * postgres (LISTEN/NOTIFY on the primary, every node sees a change within milliseconds) or
+ * local (this JVM only: single-node setups and tests; other nodes would wait for their next resync).
+ */
+@Configuration
+public class RevocationBusConfig {
+
+    @Bean(initMethod = "start", destroyMethod = "close")
+    @ConditionalOnProperty(name = "encoria.security.revocation.bus", havingValue = "postgres")
+    public PostgresRevocationBus postgresRevocationBus(JdbcTemplate jdbcTemplate,
+                                               @Value("${spring.datasource.url}") String url,
+                                               @Value("${spring.datasource.username}") String username,
+                                               @Value("${spring.datasource.password}") String password,
+                                               @Value("${encoria.security.revocation.reconnect-delay:2s}") Duration reconnectDelay) {
+        return new PostgresRevocationBus(jdbcTemplate, url, username, password, reconnectDelay);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "encoria.security.revocation.bus", havingValue = "local", matchIfMissing = true)
+    public RevocationBus localRevocationBus() {
+        return new LocalRevocationBus();
+    }
+}
@@ -1,57 +1,104 @@
 package com.encoria.backend.config;
 
 
-import com.encoria.backend.model.User;
-import com.encoria.backend.model.UserRole;
-import com.encoria.backend.repository.UserRepository;
+import com.encoria.backend.controller.ApiExceptionHandler;
+import com.encoria.backend.security.CachingJwkSource;
+import com.encoria.backend.security.CachingJwtDecoder;
+import com.encoria.backend.security.RateLimitProperties;
+import com.encoria.backend.security.RateLimiter;
+import com.encoria.backend.security.ResolvedUser;
+import com.encoria.backend.security.ResolvedUserAuthenticationToken;
+import com.encoria.backend.security.ResolvedUserCache;
+import com.encoria.backend.security.ResolvedUserJwtAuthenticationConverter;
+import com.encoria.backend.security.RevocationSet;
+import com.encoria.backend.service.LastSeenTracker;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.JWSVerificationKeySelector;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jwt.proc.DefaultJWTProcessor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.ApplicationListener;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.core.Authentication;
-import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.core.DelegatingOAuth2TokenValidator;
+import org.springframework.security.oauth2.core.OAuth2TokenValidator;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtClaimNames;
+import org.springframework.security.oauth2.jwt.JwtClaimValidator;
 import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtValidators;
 import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
-import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationConverter;
 import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
 import org.springframework.security.oauth2.server.resource.web.authentication.BearerTokenAuthenticationFilter;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.transaction.CannotCreateTransactionException;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
-import java.util.Collections;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 @Configuration
 @EnableWebSecurity
+@EnableConfigurationProperties(RateLimitProperties.class)
 public class SecurityConfig { // okta  - auth0
 
     // Define the endpoint for profile creation/update
     private static final String PROFILE_SETUP_PATH = "/api/users/profile"; // Adjust as needed
-    private final UserRepository userRepository;
+    private final ResolvedUserCache resolvedUserCache;
+    private final ReadYourWrites readYourWrites;
+    private final RevocationSet revocationSet;
     private final ObjectMapper objectMapper = new ObjectMapper(); // For error responses
+    private final Timer profileFilterTimer;
+    private final Counter profileSetupRejections;
+    private final Counter revokedRejections;
 
-    // Inject your UserRepository
-    public SecurityConfig(UserRepository userRepository) {
-        this.userRepository = userRepository;
+    // Inject the resolved-user cache (wraps UserRepository)
+    public SecurityConfig(ResolvedUserCache resolvedUserCache, ReadYourWrites readYourWrites,
+                          RevocationSet revocationSet, MeterRegistry meterRegistry) {
+        this.resolvedUserCache = resolvedUserCache;
+        this.readYourWrites = readYourWrites;
+        this.revocationSet = revocationSet;
+        this.profileFilterTimer = Timer.builder("encoria.security.profile.filter")
+                .description("Time spent in the profile completion check, excluding the rest of the chain")
+                .register(meterRegistry);
+        this.profileSetupRejections = Counter.builder("encoria.security.profile.rejections")
+                .description("Requests rejected with PROFILE_SETUP_REQUIRED")
+                .register(meterRegistry);
+        this.revokedRejections = Counter.builder("encoria.security.revoked.rejections")
+                .description("Requests rejected with ACCOUNT_DISABLED")
+                .register(meterRegistry);
     }
 
     @Bean
-    public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain filterChain(HttpSecurity http, LastSeenTracker lastSeenTracker, RateLimiter rateLimiter) throws Exception {
+        OncePerRequestFilter profileCompletionFilter = profileCompletionFilter();
         http
                 // 1. Disable CSRF for stateless APIs
                 .csrf(AbstractHttpConfigurer::disable)
@@ -60,8 +107,14 @@ public class SecurityConfig { // okta  - auth0
                 .authorizeHttpRequests(authz -> authz
                         // Allow access to the profile setup endpoint even if profile is incomplete
                         .requestMatchers(HttpMethod.POST, PROFILE_SETUP_PATH).authenticated() // Or PUT
+                        // Admin-only user management
+                        .requestMatchers(HttpMethod.POST, "/api/users/import").hasRole("ADMIN")
+                        .requestMatchers(HttpMethod.GET, "/api/users", "/api/users/export").hasRole("ADMIN")
+                        .requestMatchers(HttpMethod.PUT, "/api/users/*/access").hasRole("ADMIN")
                         // Define any other public endpoints here (e.g., actuator health)
                         .requestMatchers("/public/**", "/actuator/health").permitAll()
+                        // Remaining actuator endpoints (metrics, caches...) are admin only
+                        .requestMatchers("/actuator/**").hasRole("ADMIN")
                         // All other requests require authentication
                         .anyRequest().authenticated()
                 )
@@ -80,63 +133,174 @@ public class SecurityConfig { // okta  - auth0
                 )
 
                 // 5. Add our custom filter AFTER the standard BearerTokenAuthenticationFilter
-                .addFilterAfter(profileCompletionFilter(), BearerTokenAuthenticationFilter.class);
+                // Throttling first among ours. The user was already resolved by the bearer filter, from the caches
+                // for repeat requests (see RateLimiter); everything after this point is shielded
+                .addFilterAfter(rateLimitFilter(rateLimiter), BearerTokenAuthenticationFilter.class)
+                // Pin before the profile check, so everything after it (including a recheck of the user) reads the primary
+                .addFilterAfter(readYourWritesFilter(), BearerTokenAuthenticationFilter.class)
+                .addFilterAfter(profileCompletionFilter, BearerTokenAuthenticationFilter.class)
+                // Only requests that got past the profile check count as activity
+                .addFilterAfter(lastSeenFilter(lastSeenTracker), profileCompletionFilter.getClass())
+                // Resolving the user hits the database before any controller advice can map its failures
+                .addFilterBefore(databaseBusyFilter(), BearerTokenAuthenticationFilter.class);
 
 
         return http.build();
     }
 
     @Bean
-    public JwtAuthenticationConverter jwtAuthenticationConverter() {
-        JwtAuthenticationConverter converter = new JwtAuthenticationConverter();
-
-        // Configure it to extract authorities from our DB based on the 'sub' claim
-        converter.setJwtGrantedAuthoritiesConverter(jwt -> {
-            String externalAuthId = jwt.getSubject(); // 'sub' claim is the standard identifier
-            if (externalAuthId == null) {
-                return Collections.emptyList();
+    public ResolvedUserJwtAuthenticationConverter jwtAuthenticationConverter() {
+        // Extract authorities from our DB based on the 'sub' claim, resolved once and cached
+        return new ResolvedUserJwtAuthenticationConverter(resolvedUserCache);
+    }
+
+
+    // Keys for the issuer, kept in memory and refreshed in the background.
+    // The last good key set is persisted so a restarted node can validate tokens before its first fetch.
+    @Bean(initMethod = "start", destroyMethod = "close")
+    public CachingJwkSource jwkSource(
+            @Value("${spring.security.oauth2.resourceserver.jwt.issuer-uri}") String issuerUri,
+            @Value("${encoria.security.jwks.uri:}") String jwksUri,
+            @Value("${encoria.security.jwks.cache-file:}") String cacheFile,
+            @Value("${encoria.security.jwks.refresh-interval:5m}") Duration refreshInterval,
+            @Value("${encoria.security.jwks.min-refresh-interval:30s}") Duration minRefreshInterval,
+            @Value("${encoria.security.jwks.request-timeout:5s}") Duration requestTimeout) {
+        return new CachingJwkSource(issuerUri, jwksUri, cacheFile.isBlank() ? null : Path.of(cacheFile),
+                refreshInterval, minRefreshInterval, requestTimeout);
+    }
+
+    // Keys loaded from the cache file at startup are refreshed once the application is ready (see CachingJwkSource.start)
+    @Bean
+    public ApplicationListener<ApplicationReadyEvent> jwkRefreshAfterStartup(CachingJwkSource jwkSource) {
+        return event -> jwkSource.startRefreshing();
+    }
+
+    // Replaces Boot's auto-configured decoder so verified tokens can be cached.
+    // Issuer ('iss') and audience checks are the same ones Boot applies from application.yml.
+    @Bean
+    public JwtDecoder jwtDecoder(
+            CachingJwkSource jwkSource,
+            @Value("${spring.security.oauth2.resourceserver.jwt.issuer-uri}") String issuerUri,
+            @Value("${spring.security.oauth2.resourceserver.jwt.audiences}") List<String> audiences,
+            @Value("${encoria.security.jwks.algorithms:RS256}") List<String> algorithms,
+            @Value("${encoria.security.jwt-cache.max-size:50000}") long maxCachedTokens,
+            MeterRegistry meterRegistry) {
+        NimbusJwtDecoder verifyingDecoder = verifyingJwtDecoder(jwkSource, issuerUri, audiences, algorithms);
+        return new CachingJwtDecoder(verifyingDecoder, maxCachedTokens, meterRegistry);
+    }
+
+    /**
+     * The uncached decoder: signature check against {@code jwkSource}, then issuer/audience/timestamp validation.
+     * Static so the benchmarks can build the exact same decoder around a local key.
+     */
+    public static NimbusJwtDecoder verifyingJwtDecoder(JWKSource<SecurityContext> jwkSource, String issuerUri,
+                                                       List<String> audiences, List<String> algorithms) {
+        OAuth2TokenValidator<Jwt> validator = new DelegatingOAuth2TokenValidator<>(
+                JwtValidators.createDefaultWithIssuer(issuerUri),
+                new JwtClaimValidator<List<String>>(JwtClaimNames.AUD,
+                        aud -> aud != null && aud.stream().anyMatch(audiences::contains))
+        );
+
+        DefaultJWTProcessor<SecurityContext> jwtProcessor = new DefaultJWTProcessor<>();
+        jwtProcessor.setJWSKeySelector(new JWSVerificationKeySelector<>(
+                algorithms.stream().map(JWSAlgorithm::parse).collect(Collectors.toSet()), jwkSource));
+        // Claims are validated by Spring's validator below, and 'typ' varies between providers
+        jwtProcessor.setJWTClaimsSetVerifier((claims, context) -> { });
+        jwtProcessor.setJWSTypeVerifier((type, context) -> { });
+
+        NimbusJwtDecoder verifyingDecoder = new NimbusJwtDecoder(jwtProcessor);
+        verifyingDecoder.setJwtValidator(validator);
+        return verifyingDecoder;
+    }
+
+
+    // Answers 503 (like ApiExceptionHandler) when the security chain can't get a database connection.
+    // Not a @Bean, so Boot doesn't also register it as a servlet filter.
+    private OncePerRequestFilter databaseBusyFilter() {
+        return new OncePerRequestFilter() {
+            @Override
+            protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+                    throws ServletException, IOException {
+                try {
+                    filterChain.doFilter(request, response);
+                } catch (CannotCreateTransactionException | DataAccessResourceFailureException e) {
+                    if (response.isCommitted()) {
+                        throw e;
+                    }
+                    response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+                    response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+                    response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+                    response.getWriter().write(objectMapper.writeValueAsString(
+                            Map.of("error", ApiExceptionHandler.DATABASE_BUSY_MESSAGE)));
+                }
+            }
+        };
+    }
+
+    // Serves the rest of the request (e.g. GET /me) from the primary for users who just wrote, through this node
+    // or (per their signed cookie) another one, see ReadYourWrites. Not a @Bean, for the same reason as databaseBusyFilter().
+    private OncePerRequestFilter readYourWritesFilter() {
+        return new OncePerRequestFilter() {
+            @Override
+            protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+                    throws ServletException, IOException {
+                Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+                if (authentication instanceof JwtAuthenticationToken jwtAuth
+                        && readYourWrites.isRecentWriter(jwtAuth.getToken().getSubject())) {
+                    try (ReadYourWrites.Pin pin = ReadYourWrites.pinToPrimary()) {
+                        filterChain.doFilter(request, response);
+                    }
+                    return;
+                }
+                filterChain.doFilter(request, response);
             }
+        };
+    }
 
-            // Find the user in your local database using the external ID
-            Optional<User> userOptional = userRepository.findByExternalAuthId(externalAuthId);
-
-            // If user exists (and profile is assumed complete by this point), load their roles
-            return userOptional.map(user -> {
-                // Assuming user.getRole() returns your UserRole entity
-                UserRole role = user.getRole();
-                if (role != null && role.getCode() != null) {
-                    // Create Spring Security authorities (prefix with ROLE_ is standard)
-                    return List.<GrantedAuthority>of(new SimpleGrantedAuthority("ROLE_" + role.getCode().toUpperCase()));
-                } else {
-                    // Handle case where user exists but has no role (assign default? log warning?)
-                    // Returning empty list means they are authenticated but have no specific app roles
-                    return Collections.<GrantedAuthority>emptyList();
+    // Answers 429 with Retry-After (whole seconds) once the client (JWT 'sub', or remote address) is over the route's limit
+    private OncePerRequestFilter rateLimitFilter(RateLimiter rateLimiter) {
+        return new OncePerRequestFilter() {
+            @Override
+            protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+                    throws ServletException, IOException {
+                RateLimiter.Route route = rateLimiter.route(request);
+                if (route == null) {
+                    filterChain.doFilter(request, response);
+                    return;
                 }
-            }).orElseGet(Collections::emptyList); // If user not found in DB, return no authorities
-            // (ProfileCompletionFilter should prevent access anyway)
-        });
-
-        // Optional: If you want the principal object in SecurityContext to be your User entity
-        // instead of the Jwt object, you can customize the Authentication object creation.
-        // This is more advanced and often not strictly necessary if you load the user
-        // in your service layer based on the authenticated principal's name (which is the 'sub').
-        // Example (use with caution, ensure user is loaded efficiently):
-        /*
-        converter.setPrincipalClaimName("sub"); // Keep 'sub' as the name identifier
-        // Custom converter to create the Authentication object
-        converter.setJwtAuthenticationConverter(jwt -> {
-            Collection<GrantedAuthority> authorities = converter.getJwtGrantedAuthoritiesConverter().convert(jwt);
-            String principalClaimValue = jwt.getClaimAsString(converter.getPrincipalClaimName());
-            // Load your User entity here based on principalClaimValue (externalAuthId)
-            User userPrincipal = userRepository.findByExternalAuthId(principalClaimValue).orElse(null); // Handle null case
-            return new JwtAuthenticationToken(jwt, authorities, userPrincipal != null ? userPrincipal.getUsername() : principalClaimValue);
-            // Or return new UsernamePasswordAuthenticationToken(userPrincipal, "N/A", authorities); if you prefer
-        });
-        */
-
-        return converter;
+                String client = SecurityContextHolder.getContext().getAuthentication() instanceof JwtAuthenticationToken jwtAuth
+                        ? jwtAuth.getToken().getSubject()
+                        : request.getRemoteAddr();
+                long waitNanos = rateLimiter.tryAcquire(route, client, System.nanoTime());
+                if (waitNanos > 0) {
+                    response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+                    response.setHeader(HttpHeaders.RETRY_AFTER,
+                            Long.toString(Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999))));
+                    response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+                    response.getWriter().write(objectMapper.writeValueAsString(Map.of(
+                            "error", "RATE_LIMITED",
+                            "message", "Too many requests, retry later.")));
+                    return;
+                }
+                filterChain.doFilter(request, response);
+            }
+        };
     }
 
+    // Records the user's activity in memory (see LastSeenTracker), written to the database in batches
+    private OncePerRequestFilter lastSeenFilter(LastSeenTracker lastSeenTracker) {
+        return new OncePerRequestFilter() {
+            @Override
+            protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+                    throws ServletException, IOException {
+                if (SecurityContextHolder.getContext().getAuthentication() instanceof ResolvedUserAuthenticationToken resolved
+                        && resolved.getUser().isRegistered()) {
+                    lastSeenTracker.record(resolved.getUser().id());
+                }
+                filterChain.doFilter(request, response);
+            }
+        };
+    }
 
     // Define the ProfileCompletionFilter Bean
     @Bean
@@ -146,24 +310,47 @@ public class SecurityConfig { // okta  - auth0
             protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
                     throws ServletException, IOException {
 
+                long started = System.nanoTime();
                 Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
 
+                // Disabled/locked accounts are refused everywhere, profile setup included (in-memory lookup, see RevocationSet)
+                if (authentication instanceof ResolvedUserAuthenticationToken resolved && resolved.getUser().isRegistered()
+                        && revocationSet.isRevoked(resolved.getUser().id())) {
+                    response.setStatus(HttpServletResponse.SC_FORBIDDEN);
+                    response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+                    response.getWriter().write(objectMapper.writeValueAsString(Map.of(
+                            "error", "ACCOUNT_DISABLED",
+                            "message", "This account is disabled or locked.")));
+                    revokedRejections.increment();
+                    profileFilterTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+                    return;
+                }
+
                 // Allow requests to the profile creation/update endpoint itself to pass through
                 if (request.getRequestURI().equals(PROFILE_SETUP_PATH) &&
                         (request.getMethod().equalsIgnoreCase("POST") || request.getMethod().equalsIgnoreCase("PUT"))) {
+                    profileFilterTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
                     filterChain.doFilter(request, response);
                     return;
                 }
 
                 // Check only if user is authenticated via JWT
                 if (authentication instanceof JwtAuthenticationToken jwtAuth) {
-                    String externalAuthId = jwtAuth.getToken().getSubject(); // Assuming 'sub' claim
-
                     // Check if user exists AND is considered "complete" in your DB
-                    // Adapt the logic based on your definition of "complete" (e.g., username != null)
-                    boolean profileComplete = userRepository.findByExternalAuthId(externalAuthId)
-                            .map(user -> user.getUsername() != null /* && other required fields are not null */)
-                            .orElse(false);
+                    // The user was already resolved by jwtAuthenticationConverter(), no extra lookup here
+                    boolean profileComplete = jwtAuth instanceof ResolvedUserAuthenticationToken resolved
+                            && resolved.getUser().isProfileComplete();
+
+                    // "Unregistered" may be a cached answer from before a signup handled by another node: ask the primary
+                    if (!profileComplete && jwtAuth instanceof ResolvedUserAuthenticationToken resolved
+                            && !resolved.getUser().isRegistered()) {
+                        ResolvedUser current = resolvedUserCache.recheckUnregistered(jwtAuth.getToken().getSubject());
+                        if (current.isProfileComplete()) {
+                            SecurityContextHolder.getContext().setAuthentication(
+                                    new ResolvedUserAuthenticationToken(jwtAuth.getToken(), current));
+                            profileComplete = true;
+                        }
+                    }
 
                     if (!profileComplete) {
                         // Profile is not complete, reject the request
@@ -176,11 +363,14 @@ public class SecurityConfig { // okta  - auth0
                                 // "email", jwtAuth.getToken().getClaimAsString("email")
                         );
                         response.getWriter().write(objectMapper.writeValueAsString(errorResponse));
+                        profileSetupRejections.increment();
+                        profileFilterTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
                         return; // Stop filter chain
                     }
                 }
 
                 // If authenticated and profile is complete, or not authenticated (for public endpoints), continue
+                profileFilterTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
                 filterChain.doFilter(request, response);
             }
         };
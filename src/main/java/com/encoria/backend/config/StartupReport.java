@@ -0,0 +1,155 @@
+package com.encoria.backend.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
+import org.springframework.boot.context.metrics.buffering.StartupTimeline.TimelineEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.core.metrics.StartupStep;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Startup timeline, logged once the application is ready: time spent in the JVM before Spring started, in the
+ * context refresh and in the ready listeners, plus the beans that took longest to create (from the
+ * {@link BufferingApplicationStartup} installed by BackendApplication, also served on /actuator/startup).
+ * <p>
+ * Then logs when the first request was served, counted from JVM start. That is the number autoscaling waits for,
+ * published as the {@code encoria.startup.first-request} gauge.
+ */
+@Slf4j
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class StartupReport implements Filter {
+
+    private static final int SLOWEST = 10;
+
+    // JVM uptime in ms, -1 until known
+    private final AtomicLong firstRequestAt = new AtomicLong(-1);
+    private volatile long startedAt = -1;
+    private volatile long readyAt = -1;
+
+    public StartupReport(MeterRegistry meterRegistry) {
+        TimeGauge.builder("encoria.startup.first-request", firstRequestAt, TimeUnit.MILLISECONDS,
+                        at -> at.get() < 0 ? Double.NaN : at.get())
+                .description("Time from JVM start until the first request was served")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationStartedEvent.class)
+    public void started(ApplicationStartedEvent event) {
+        startedAt = uptime();
+        log.info("Context refreshed and web server started {} ms after JVM start ({} ms in SpringApplication.run)",
+                startedAt, millis(event.getTimeTaken()));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void ready(ApplicationReadyEvent event) {
+        readyAt = uptime();
+        long inSpring = millis(event.getTimeTaken());
+        log.info("Ready {} ms after JVM start: {} ms before SpringApplication.run, {} ms to refresh and start, {} ms in ready listeners",
+                readyAt, readyAt - inSpring, startedAt - (readyAt - inSpring), readyAt - startedAt);
+        if (event.getApplicationContext().getApplicationStartup() instanceof BufferingApplicationStartup startup) {
+            Steps steps = Steps.of(startup.getBufferedTimeline().getEvents());
+            log.info("Startup steps by time spent in them (excluding nested steps): {}", steps.slowestNames());
+            log.info("Slowest beans to create (excluding their dependencies): {}", steps.slowestBeans());
+        }
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException {
+        if (firstRequestAt.get() >= 0) {
+            chain.doFilter(request, response);
+            return;
+        }
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            long now = uptime();
+            if (firstRequestAt.compareAndSet(-1, now)) {
+                log.info("First request ({}) served {} ms after JVM start, {} ms after ready", describe(request), now,
+                        readyAt < 0 ? "?" : now - readyAt);
+            }
+        }
+    }
+
+    /**
+     * Time spent in each recorded step itself. Steps nest (creating a bean creates its dependencies, the context
+     * refresh contains everything), so each one's children are subtracted from it.
+     */
+    record Steps(Map<Long, Long> selfNanos, Map<Long, String> names, Map<Long, String> beanNames) {
+
+        static Steps of(List<TimelineEvent> events) {
+            Steps steps = new Steps(new HashMap<>(), new HashMap<>(), new HashMap<>());
+            for (TimelineEvent event : events) {
+                StartupStep step = event.getStartupStep();
+                steps.selfNanos.merge(step.getId(), event.getDuration().toNanos(), Long::sum);
+                if (step.getParentId() != null) {
+                    steps.selfNanos.merge(step.getParentId(), -event.getDuration().toNanos(), Long::sum);
+                }
+                steps.names.put(step.getId(), step.getName());
+                if ("spring.beans.instantiate".equals(step.getName())) {
+                    for (StartupStep.Tag tag : step.getTags()) {
+                        if ("beanName".equals(tag.getKey())) {
+                            steps.beanNames.put(step.getId(), tag.getValue());
+                        }
+                    }
+                }
+            }
+            return steps;
+        }
+
+        // e.g. spring.beans.instantiate=5120ms, spring.context.config-classes.parse=830ms
+        String slowestNames() {
+            Map<String, Long> byName = new HashMap<>();
+            names.forEach((id, name) -> byName.merge(name, selfNanos.getOrDefault(id, 0L), Long::sum));
+            return slowest(byName);
+        }
+
+        String slowestBeans() {
+            Map<String, Long> byBean = new HashMap<>();
+            beanNames.forEach((id, bean) -> byBean.merge(bean, selfNanos.getOrDefault(id, 0L), Long::sum));
+            return slowest(byBean);
+        }
+
+        private static String slowest(Map<String, Long> nanos) {
+            return nanos.entrySet().stream()
+                    .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                    .limit(SLOWEST)
+                    .map(entry -> entry.getKey() + "=" + entry.getValue() / 1_000_000 + "ms")
+                    .collect(Collectors.joining(", "));
+        }
+    }
+
+    private static String describe(ServletRequest request) {
+        return request instanceof HttpServletRequest http ? http.getMethod() + " " + http.getRequestURI() : "?";
+    }
+
+    private static long uptime() {
+        return ManagementFactory.getRuntimeMXBean().getUptime();
+    }
+
+    private static long millis(Duration duration) {
+        return duration == null ? -1 : duration.toMillis();
+    }
+}
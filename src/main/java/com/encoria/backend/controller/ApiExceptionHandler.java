@@ -0,0 +1,29 @@
+package com.encoria.backend.controller;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.NestedRuntimeException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+import java.util.Map;
+
+@Slf4j
+@RestControllerAdvice
+public class ApiExceptionHandler {
+
+    public static final String DATABASE_BUSY_MESSAGE = "Service is busy, please retry.";
+
+    // No database connection available (pool exhausted or BoundedWaitDataSource full): ask the client to retry
+    @ExceptionHandler({CannotCreateTransactionException.class, DataAccessResourceFailureException.class})
+    public ResponseEntity<?> databaseBusy(NestedRuntimeException e) {
+        log.warn("Rejecting request, no database connection: {}", e.getMostSpecificCause().getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(Map.of("error", DATABASE_BUSY_MESSAGE));
+    }
+}
@@ -0,0 +1,126 @@
+package com.encoria.backend.controller;
+
+import com.encoria.backend.service.ProfilePictureService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Serves profile pictures and thumbnails (see {@link ProfilePictureService}) straight from disk: with Tomcat's
+ * sendfile (the kernel copies the file to the socket) when the connector supports it, otherwise through
+ * {@link FileChannel#transferTo}. Supports If-None-Match and single byte ranges (with If-Range).
+ */
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/public/pictures")
+public class PictureController {
+
+    // Request attributes of Tomcat's sendfile support (org.apache.catalina.Globals)
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+    // Below this, a plain write is cheaper than handing the file over to the poller (Tomcat's DefaultServlet uses 48 KB)
+    private static final long SENDFILE_MIN_BYTES = 48 * 1024;
+
+    // Picture names are content hashes, so a URL always returns the same bytes
+    private static final CacheControl IMMUTABLE = CacheControl.maxAge(Duration.ofDays(365)).cachePublic().immutable();
+
+    private final ProfilePictureService profilePictureService;
+
+    @GetMapping("/{name}")
+    public void getPicture(@PathVariable String name, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        ProfilePictureService.Picture picture = profilePictureService.find(name).orElse(null);
+        if (picture == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        if (new ServletWebRequest(request, response).checkNotModified(picture.etag())) {
+            return; // 304 Not Modified, already written by checkNotModified
+        }
+
+        long length = Files.size(picture.path());
+        response.setContentType(picture.contentType().toString());
+        response.setHeader(HttpHeaders.ETAG, picture.etag());
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        // A thumbnail still being generated is answered with its original, which must not be cached as the thumbnail
+        response.setHeader(HttpHeaders.CACHE_CONTROL,
+                (picture.immutable() ? IMMUTABLE : CacheControl.noCache()).getHeaderValue());
+
+        HttpRange range = requestedRange(request, picture.etag());
+        if (range == null) {
+            transfer(request, response, picture, 0, length);
+            return;
+        }
+        long start = range.getRangeStart(length);
+        long end = range.getRangeEnd(length);
+        if (start >= length || start > end) { // Starts past the end of the file
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+            response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            return;
+        }
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+        transfer(request, response, picture, start, end - start + 1);
+    }
+
+    // A single byte range to answer with 206, or null for the whole file. Multiple ranges are answered
+    // with the whole file (allowed by RFC 9110), as is a Range whose If-Range no longer matches.
+    private static HttpRange requestedRange(HttpServletRequest request, String etag) {
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader == null) {
+            return null;
+        }
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange != null && !ifRange.equals(etag)) {
+            return null;
+        }
+        try {
+            List<HttpRange> ranges = HttpRange.parseRanges(rangeHeader);
+            return ranges.size() == 1 ? ranges.get(0) : null;
+        } catch (IllegalArgumentException e) { // Malformed header, ignored
+            return null;
+        }
+    }
+
+    private static void transfer(HttpServletRequest request, HttpServletResponse response,
+                                 ProfilePictureService.Picture picture, long start, long count) throws IOException {
+        response.setContentLengthLong(count);
+        if (count >= SENDFILE_MIN_BYTES && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED))) {
+            // Tomcat writes the file once this request returns; the path is canonical (toRealPath in the service)
+            request.setAttribute(SENDFILE_FILENAME, picture.path().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, start + count);
+            return;
+        }
+        try (FileChannel file = FileChannel.open(picture.path(), StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            long end = start + count;
+            while (position < end) {
+                long written = file.transferTo(position, end - position, out);
+                if (written <= 0) {
+                    break; // File shrank underneath us, can't happen for content-addressed files
+                }
+                position += written;
+            }
+        }
+    }
+}
@@ -1,26 +1,66 @@
 package com.encoria.backend.controller;
 
-import com.encoria.backend.repository.UserRoleRepository;
+import com.encoria.backend.service.AvailabilityService;
+import com.encoria.backend.service.RoleCatalog;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 @RestController
 @RequiredArgsConstructor
 @RequestMapping("/public")
 public class PublicController {
 
-    private final UserRoleRepository userRoleRepository;
+    private final RoleCatalog roleCatalog;
+    private final AvailabilityService availabilityService;
 
     @GetMapping("/hello")
     public String hello() {
         return "Hello World";
     }
 
+    // Served from the pre-serialized RoleCatalog snapshot; clients revalidate with If-None-Match
     @GetMapping("/roles")
-    public String getRoles() {
-        return userRoleRepository.findAll().toString();
+    public ResponseEntity<byte[]> getRoles(WebRequest request) {
+        RoleCatalog.Snapshot roles = roleCatalog.current();
+        if (request.checkNotModified(roles.etag())) {
+            return null; // 304 Not Modified, already written by checkNotModified
+        }
+        return ResponseEntity.ok()
+                .eTag(roles.etag())
+                .cacheControl(CacheControl.noCache())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(roles.json());
+    }
+
+    // Signup form availability check (called on every keystroke): most answers come from an in-memory index
+    @GetMapping("/availability")
+    public ResponseEntity<?> checkAvailability(@RequestParam(required = false) String username,
+                                               @RequestParam(required = false) String email) {
+        if (isBlank(username) && isBlank(email)) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Provide a username and/or an email."));
+        }
+        Map<String, Boolean> availability = new LinkedHashMap<>();
+        if (!isBlank(username)) {
+            availability.put("username", availabilityService.isUsernameAvailable(username));
+        }
+        if (!isBlank(email)) {
+            availability.put("email", availabilityService.isEmailAvailable(email));
+        }
+        return ResponseEntity.ok().cacheControl(CacheControl.noStore()).body(availability);
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
     }
 
 }
@@ -1,25 +1,53 @@
 package com.encoria.backend.controller;
 
 import com.encoria.backend.model.User;
+import com.encoria.backend.model.UserAccessDto;
 import com.encoria.backend.model.UserProfileDto;
+import com.encoria.backend.model.UserProfileView;
+import com.encoria.backend.service.ProfilePictureService;
+import com.encoria.backend.service.PublicProfileService;
+import com.encoria.backend.service.UserImportService;
+import com.encoria.backend.service.UserListingService;
 import com.encoria.backend.service.UserService;
+import jakarta.persistence.EntityNotFoundException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.transaction.CannotCreateTransactionException;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import java.io.IOException;
+import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 
 @RestController
 @RequestMapping("/api/users")
 public class UserController {
 
     private final UserService userService;
+    private final UserImportService userImportService;
+    private final UserListingService userListingService;
+    private final PublicProfileService publicProfileService;
+    private final ProfilePictureService profilePictureService;
 
-    public UserController(UserService userService) {
+    public UserController(UserService userService, UserImportService userImportService,
+                          UserListingService userListingService, PublicProfileService publicProfileService,
+                          ProfilePictureService profilePictureService) {
         this.userService = userService;
+        this.userImportService = userImportService;
+        this.userListingService = userListingService;
+        this.publicProfileService = publicProfileService;
+        this.profilePictureService = profilePictureService;
     }
 
     // Endpoint for the user to submit their profile details
@@ -45,29 +73,157 @@ public class UserController {
             return ResponseEntity.status(HttpStatus.CREATED).body(createdUser); // Or a UserProfileDto representation
         } catch (IllegalStateException e) { // Example: Catch username/email already exists
             return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+        } catch (IllegalArgumentException e) { // pictureUrl that isn't an upload
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of("error", e.getMessage()));
+        } catch (CannotCreateTransactionException e) {
+            throw e; // No connection available, answered with 503 by ApiExceptionHandler
         } catch (Exception e) {
             // Log error
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of("error", "Failed to create profile."));
         }
     }
 
+    // Partial update: only the fields present in the body change (PUT behaves the same, it was already whitelisted).
+    // Send the ETag from /me as If-Match to be sure the edit applies to the profile the client last saw.
+    @RequestMapping(value = "/profile", method = {RequestMethod.PATCH, RequestMethod.PUT})
+    public ResponseEntity<?> updateUserProfile(@AuthenticationPrincipal Jwt jwt,
+                                               @RequestBody UserProfileDto changes,
+                                               @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        String emailFromToken = jwt.getClaimAsString("email");
+        if (changes.getEmail() != null && emailFromToken != null && !emailFromToken.equalsIgnoreCase(changes.getEmail())) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(Map.of("error", "Email mismatch between token and request."));
+        }
+
+        try {
+            User user = userService.updateProfile(jwt.getSubject(), changes, ifMatch);
+            return ResponseEntity.ok()
+                    .eTag(UserService.profileEtag(user.getUpdatedAt()))
+                    .cacheControl(CacheControl.noCache().cachePrivate())
+                    .body(UserProfileView.from(user));
+        } catch (EntityNotFoundException e) { // PUT is let through the profile filter before setup
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of("error", e.getMessage()));
+        } catch (IllegalStateException e) { // Username/email already taken
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+        } catch (OptimisticLockingFailureException e) {
+            // 412 if the client's If-Match is stale, 409 if another edit committed first
+            return ResponseEntity.status(ifMatch != null ? HttpStatus.PRECONDITION_FAILED : HttpStatus.CONFLICT)
+                    .body(Map.of("error", "Profile was modified by another request, reload it and retry."));
+        }
+    }
+
+    // Raw JPEG/PNG body (not multipart), streamed to disk; pictureUrl then points at the stored file
+    @PutMapping(value = "/profile/picture", consumes = {MediaType.IMAGE_JPEG_VALUE, MediaType.IMAGE_PNG_VALUE})
+    public ResponseEntity<?> uploadProfilePicture(@AuthenticationPrincipal Jwt jwt, HttpServletRequest request) throws IOException {
+        // Refuse a declared oversized body before reading any of it
+        if (request.getContentLengthLong() > profilePictureService.getMaxBytes()) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE)
+                    .body(Map.of("error", "Picture exceeds the maximum size of " + profilePictureService.getMaxBytes() + " bytes."));
+        }
+        try {
+            String pictureUrl = profilePictureService.store(request.getInputStream());
+            userService.updatePictureUrl(jwt.getSubject(), pictureUrl);
+            return ResponseEntity.ok(Map.of("pictureUrl", pictureUrl));
+        } catch (ProfilePictureService.PictureTooLargeException e) { // Chunked body that went over the limit
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(Map.of("error", e.getMessage()));
+        } catch (EntityNotFoundException e) { // Profile removed since the filter resolved it
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of("error", e.getMessage()));
+        }
+    }
+
     // Example: Endpoint to get the current user's data (will only work after profile setup)
+    // Conditional GET: one projection query either way, answered with a 304 if its ETag still matches
     @GetMapping("/me")
-    public ResponseEntity<?> getCurrentUser(@AuthenticationPrincipal Jwt jwt) {
-        String externalAuthId = jwt.getSubject();
-        User user = userService.findByExternalAuthId(externalAuthId)
-                .orElseThrow(() -> new RuntimeException("User not found, profile setup likely incomplete.")); // Should be caught by filter
-        // Convert user to DTO and return
-        return ResponseEntity.ok(user); // Replace with DTO mapping
+    public ResponseEntity<?> getCurrentUser(@AuthenticationPrincipal Jwt jwt, WebRequest request) {
+        return profileResponse(jwt.getSubject(), request);
     }
 
     @GetMapping("/you")
-    public ResponseEntity<?> getUserEmail(@AuthenticationPrincipal Jwt jwt) {
-        String externalAuthId = jwt.getSubject();
-        User user = userService.findByExternalAuthId(externalAuthId)
+    public ResponseEntity<?> getUserEmail(@AuthenticationPrincipal Jwt jwt, WebRequest request) {
+        return profileResponse(jwt.getSubject(), request);
+    }
+
+    private ResponseEntity<?> profileResponse(String externalAuthId, WebRequest request) {
+        UserProfileView profile = userService.findProfileView(externalAuthId)
                 .orElseThrow(() -> new RuntimeException("User not found, profile setup likely incomplete.")); // Should be caught by filter
-        // Convert user to DTO and return
-        return ResponseEntity.ok(user); // Replace with DTO mapping
+        // The projection carries updatedAt, so the ETag comes from the same row as the body
+        if (request.checkNotModified(UserService.profileEtag(profile.updatedAt()))) {
+            return null; // 304 Not Modified, already written by checkNotModified
+        }
+        return ResponseEntity.ok()
+                .eTag(UserService.profileEtag(profile.updatedAt()))
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .body(profile);
+    }
+
+    // Public cards (username, names, picture) for up to encoria.users.batch.max-ids users in one call.
+    // Streamed as a JSON array in no particular order; unknown ids are left out.
+    @PostMapping("/batch")
+    public ResponseEntity<?> getUsersByUuid(@RequestBody List<UUID> uuids, HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        try {
+            publicProfileService.writeProfiles(uuids, response.getOutputStream());
+            return null; // Already written
+        } catch (IllegalArgumentException e) { // Thrown before anything is written
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    // Typeahead people search by username / first / last name (in-memory prefix index)
+    @GetMapping("/search")
+    public ResponseEntity<?> searchUsers(@RequestParam("q") String query,
+                                         @RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(userService.searchUsers(query, limit));
+    }
+
+    // Admin only (see SecurityConfig): bulk import of legacy accounts, one UserImportRecord per NDJSON line.
+    // The body is consumed as a stream and per-record errors are streamed back, followed by a summary line.
+    @PostMapping(value = "/import", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public void importUsers(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        userImportService.importUsers(request.getInputStream(), response.getOutputStream());
+    }
+
+    // Admin only: keyset-paginated listing, sorted by id or createdAt (pass nextCursor to get the next page)
+    @GetMapping
+    public ResponseEntity<?> listUsers(@RequestParam(defaultValue = "ID") UserListingService.SortKey sort,
+                                       @RequestParam(required = false) String cursor,
+                                       @RequestParam(defaultValue = "50") int size) {
+        try {
+            return ResponseEntity.ok(userListingService.listUsers(sort, cursor, size));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    // Admin only: full export streamed straight from a database cursor (NDJSON or CSV)
+    @GetMapping("/export")
+    public void exportUsers(@RequestParam(defaultValue = "NDJSON") UserListingService.ExportFormat format,
+                            HttpServletResponse response) throws IOException {
+        response.setStatus(HttpServletResponse.SC_OK);
+        if (format == UserListingService.ExportFormat.CSV) {
+            response.setContentType("text/csv;charset=UTF-8");
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"users.csv\"");
+        } else {
+            response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        }
+        userListingService.exportUsers(format, response.getOutputStream());
+    }
+
+    // Admin only: disable/lock (or restore) an account; takes effect on every node in well under a second
+    @PutMapping("/{uuid}/access")
+    public ResponseEntity<?> updateUserAccess(@PathVariable UUID uuid, @RequestBody UserAccessDto access) {
+        try {
+            User user = userService.updateAccess(uuid, access);
+            return ResponseEntity.ok(Map.of("uuid", user.getUuid(), "enabled", user.isEnabled(), "nonLocked", user.isNonLocked()));
+        } catch (EntityNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", e.getMessage()));
+        }
     }
 
     // Other user-related endpoints...
@@ -2,6 +2,7 @@ package com.encoria.backend.model;
 import jakarta.persistence.*;
 import lombok.*;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.DynamicUpdate;
 import org.hibernate.annotations.GenericGenerator; // Import for GenericGenerator if needed
 import org.hibernate.annotations.UpdateTimestamp;
 import org.hibernate.annotations.UuidGenerator; // Import for newer Hibernate strategy
@@ -15,14 +16,21 @@ import java.util.UUID;     // Use UUID type
 @AllArgsConstructor
 @Builder
 @Entity
+@DynamicUpdate // UPDATEs set only the changed columns (a profile edit usually touches one or two)
 @Table(name = "users", uniqueConstraints = {
-        @UniqueConstraint(columnNames = "uuid"),
-        @UniqueConstraint(columnNames = "externalAuthId"),
-        @UniqueConstraint(columnNames = "username"),
-        @UniqueConstraint(columnNames = "email")
+        @UniqueConstraint(name = User.UK_UUID, columnNames = "uuid"),
+        @UniqueConstraint(name = User.UK_EXTERNAL_AUTH_ID, columnNames = "externalAuthId"),
+        @UniqueConstraint(name = User.UK_USERNAME, columnNames = "username")
+        // UK_EMAIL is a unique index on lower(email), created by the V2 migration
 })
 public class User {
 
+    // Constraint names, used by UserService to map insert conflicts to 409 messages (schema in db/migration)
+    public static final String UK_UUID = "uk_users_uuid";
+    public static final String UK_EXTERNAL_AUTH_ID = "uk_users_external_auth_id";
+    public static final String UK_USERNAME = "uk_users_username";
+    public static final String UK_EMAIL = "uk_users_email";
+
     @Id
     @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "users_seq")
     @SequenceGenerator(name = "users_seq", sequenceName = "users_seq", allocationSize = 50)
@@ -33,7 +41,7 @@ public class User {
     //@GeneratedValue(strategy = GenerationType.UUID) // Strategy for JPA to know it's generated
     // OR for more modern Hibernate:
     @UuidGenerator(style = UuidGenerator.Style.RANDOM) // Specify UUIDv4 generation strategy
-    @Column(nullable = false, updatable = false, unique = true) // UUID shouldn't be updated
+    @Column(nullable = false, updatable = false) // UUID shouldn't be updated (unique via UK_UUID)
     private UUID uuid; // Change type to java.util.UUID
     // --- End UUID Changes ---
 
@@ -60,9 +68,13 @@ public class User {
     private UserRole role;
 
     // --- Example: Other Default Values ---
+    // @Builder.Default: without it the builder ignores the initializer and signups were created disabled (see V6)
+    // Enforced per request through RevocationSet, not by reading these columns
+    @Builder.Default
     @Column(nullable = false)
     private boolean isEnabled = true;
 
+    @Builder.Default
     @Column(nullable = false)
     private boolean isNonLocked = true;
 
@@ -74,5 +86,14 @@ public class User {
     @UpdateTimestamp
     @Column(nullable = false)
     private java.time.Instant updatedAt;
+
+    // Optimistic lock, checked by every entity UPDATE (... where id = ? and version = ?), see UserService.updateProfile
+    @Version
+    @Column(nullable = false)
+    private Long version;
+
+    // Written only by LastSeenTracker's batched UPDATEs, never through the entity (and doesn't bump updatedAt)
+    @Column(insertable = false, updatable = false)
+    private java.time.Instant lastSeenAt;
     // --- End Example ---
 }
\ No newline at end of file
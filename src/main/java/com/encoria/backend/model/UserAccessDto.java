@@ -0,0 +1,18 @@
+package com.encoria.backend.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+// Admin change of a user's access (PUT /api/users/{uuid}/access); null fields are left as they are
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserAccessDto {
+
+    private Boolean enabled;
+    private Boolean nonLocked;
+
+}
@@ -0,0 +1,18 @@
+package com.encoria.backend.model;
+
+import java.util.UUID;
+
+/**
+ * The columns the security chain needs about a user (see ResolvedUser), read by
+ * {@code UserRepository.findAuthViewByExternalAuthId} without loading the entity.
+ */
+public record UserAuthView(
+        String externalAuthId,
+        Long id,
+        UUID uuid,
+        String username,
+        String roleCode,
+        boolean enabled,
+        boolean nonLocked
+) {
+}
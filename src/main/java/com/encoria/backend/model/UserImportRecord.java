@@ -0,0 +1,17 @@
+package com.encoria.backend.model;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * One line of a bulk user import (NDJSON): a regular profile plus the identity provider's 'sub'.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+public class UserImportRecord extends UserProfileDto {
+
+    private String externalAuthId;
+
+}
@@ -0,0 +1,24 @@
+package com.encoria.backend.model;
+
+import java.util.UUID;
+
+/**
+ * The searchable/unique keys of a user, streamed from the database to build in-memory indexes.
+ * {@code version} is the row's optimistic-lock version, so an index can tell which of two snapshots is newer.
+ */
+public record UserIndexEntry(
+        Long id,
+        UUID uuid,
+        String username,
+        String email,
+        String firstName,
+        String lastName,
+        String pictureUrl,
+        Long version
+) {
+
+    public static UserIndexEntry from(User user) {
+        return new UserIndexEntry(user.getId(), user.getUuid(), user.getUsername(), user.getEmail(),
+                user.getFirstName(), user.getLastName(), user.getPictureUrl(), user.getVersion());
+    }
+}
@@ -0,0 +1,30 @@
+package com.encoria.backend.model;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.UUID;
+
+/**
+ * Public, read-only view of a user's own profile (/api/users/me).
+ * Selected directly by a JPQL constructor expression, so no User entity is hydrated.
+ */
+public record UserProfileView(
+        UUID uuid,
+        String username,
+        String email,
+        String firstName,
+        String lastName,
+        LocalDate birthdate,
+        String pictureUrl,
+        String role,
+        Instant createdAt,
+        Instant updatedAt
+) {
+
+    // For write paths that already hold the entity (e.g. the profile update response)
+    public static UserProfileView from(User user) {
+        return new UserProfileView(user.getUuid(), user.getUsername(), user.getEmail(), user.getFirstName(),
+                user.getLastName(), user.getBirthdate(), user.getPictureUrl(),
+                user.getRole() != null ? user.getRole().getCode() : null, user.getCreatedAt(), user.getUpdatedAt());
+    }
+}
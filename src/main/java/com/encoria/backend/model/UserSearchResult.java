@@ -0,0 +1,13 @@
+package com.encoria.backend.model;
+
+import java.util.UUID;
+
+/**
+ * Public card returned by people search (no email, no internal id).
+ */
+public record UserSearchResult(UUID uuid, String username, String firstName, String lastName, String pictureUrl) {
+
+    public static UserSearchResult from(UserIndexEntry entry) {
+        return new UserSearchResult(entry.uuid(), entry.username(), entry.firstName(), entry.lastName(), entry.pictureUrl());
+    }
+}
@@ -0,0 +1,23 @@
+package com.encoria.backend.model;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Read-only row for admin listings/exports, selected with a JPQL constructor expression
+ * (no managed User entity, no EAGER role fetch, no dirty-check snapshot).
+ */
+public record UserSummary(
+        Long id,
+        UUID uuid,
+        String externalAuthId,
+        String username,
+        String email,
+        String firstName,
+        String lastName,
+        String roleCode,
+        boolean enabled,
+        boolean nonLocked,
+        Instant createdAt
+) {
+}
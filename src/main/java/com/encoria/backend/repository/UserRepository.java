@@ -1,22 +1,116 @@
 package com.encoria.backend.repository;
 
 import com.encoria.backend.model.User;
+import com.encoria.backend.model.UserAuthView;
+import com.encoria.backend.model.UserIndexEntry;
+import com.encoria.backend.model.UserProfileView;
+import com.encoria.backend.model.UserSearchResult;
+import com.encoria.backend.model.UserSummary;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Stream;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
 
     Optional<User> findByExternalAuthId(String externalAuthId);
 
+    Optional<User> findByUuid(UUID uuid);
+
+    // Disabled or locked users, loaded into RevocationSet (partial index ix_users_revoked on Postgres, see V7)
+    @Query("select u.id from User u where u.isEnabled = false or u.isNonLocked = false")
+    List<Long> findRevokedUserIds();
+
     boolean existsByExternalAuthId(String externalAuthId);
 
+    // Security lookup (ResolvedUserCache): every users column it reads is in the uk_users_external_auth_id
+    // index on Postgres (see V2 migration), so it's an index-only scan plus the user_roles primary key
+    @Query("select new com.encoria.backend.model.UserAuthView(u.externalAuthId, u.id, u.uuid, u.username, r.code, "
+            + "u.isEnabled, u.isNonLocked) "
+            + "from User u join u.role r where u.externalAuthId = :externalAuthId")
+    Optional<UserAuthView> findAuthViewByExternalAuthId(@Param("externalAuthId") String externalAuthId);
+
+    // --- Own-profile read path (projections, see UserProfileView) ---
+    @Query("select new com.encoria.backend.model.UserProfileView(u.uuid, u.username, u.email, u.firstName, u.lastName, "
+            + "u.birthdate, u.pictureUrl, r.code, u.createdAt, u.updatedAt) "
+            + "from User u join u.role r where u.externalAuthId = :externalAuthId")
+    Optional<UserProfileView> findProfileViewByExternalAuthId(@Param("externalAuthId") String externalAuthId);
+
     // Method to check if username exists (needed for profile validation)
     boolean existsByUsername(String username);
 
-    // Method to check if email exists (needed for profile validation)
-    boolean existsByEmail(String email);
+    // Method to check if email exists (needed for profile validation).
+    // Case-insensitive like the uk_users_email index on lower(email), and written so Postgres can use it
+    @Query("select count(u) > 0 from User u where lower(u.email) = lower(:email)")
+    boolean existsByEmail(@Param("email") String email);
+
+    // --- Admin listing / export (projections, see UserSummary) ---
+    String SUMMARY_SELECT = "select new com.encoria.backend.model.UserSummary(u.id, u.uuid, u.externalAuthId, u.username, "
+            + "u.email, u.firstName, u.lastName, r.code, u.isEnabled, u.isNonLocked, u.createdAt) from User u join u.role r ";
+
+    // Keyset (seek) pagination: the cursor is the last row of the previous page, so no OFFSET scans
+    @Query(SUMMARY_SELECT + "where u.id > :afterId order by u.id")
+    List<UserSummary> findSummariesAfterId(@Param("afterId") long afterId, Limit limit);
+
+    // The redundant createdAt >= bound gives the database a range start on ix_users_created_at (created_at, id);
+    // with the OR alone it would walk the index from the beginning, filtering
+    @Query(SUMMARY_SELECT + "where u.createdAt >= :afterCreatedAt "
+            + "and (u.createdAt > :afterCreatedAt or u.id > :afterId) "
+            + "order by u.createdAt, u.id")
+    List<UserSummary> findSummariesAfterCreatedAt(@Param("afterCreatedAt") Instant afterCreatedAt,
+                                                  @Param("afterId") long afterId,
+                                                  Limit limit);
+
+    // Must be consumed inside a (read-only) transaction and closed; rows are fetched from the cursor in batches
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query(SUMMARY_SELECT + "order by u.id")
+    Stream<UserSummary> streamAllSummaries();
+
+    // Keys for the in-memory indexes, streamed at startup (consume inside a read-only transaction)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("select new com.encoria.backend.model.UserIndexEntry(u.id, u.uuid, u.username, u.email, "
+            + "u.firstName, u.lastName, u.pictureUrl, u.version) "
+            + "from User u")
+    Stream<UserIndexEntry> streamIndexEntries();
+
+    // Users written at or after 'since' (their own node's clock), for the indexes' periodic catch-up (see UserIndexer)
+    @Query("select new com.encoria.backend.model.UserIndexEntry(u.id, u.uuid, u.username, u.email, "
+            + "u.firstName, u.lastName, u.pictureUrl, u.version) "
+            + "from User u where u.updatedAt >= :since")
+    Stream<UserIndexEntry> streamIndexEntriesUpdatedSince(@Param("since") Instant since);
+
+    // People search straight from the table (LIKE 'prefix%'); only used until UserSearchIndex is ready
+    @Query("select new com.encoria.backend.model.UserSearchResult(u.uuid, u.username, u.firstName, u.lastName, u.pictureUrl) "
+            + "from User u where lower(u.username) like :pattern escape '\\' or lower(u.firstName) like :pattern escape '\\' "
+            + "or lower(u.lastName) like :pattern escape '\\' order by u.username")
+    List<UserSearchResult> searchByPrefix(@Param("pattern") String pattern, Limit limit);
+
+    // Public cards by uuid for POST /api/users/batch, called with chunks of at most encoria.users.batch.chunk-size ids
+    @Query("select new com.encoria.backend.model.UserSearchResult(u.uuid, u.username, u.firstName, u.lastName, u.pictureUrl) "
+            + "from User u where u.uuid in :uuids")
+    List<UserSearchResult> findPublicProfilesByUuidIn(@Param("uuids") Collection<UUID> uuids);
+
+    // Batch variants of the checks above, used by the bulk import (one query per chunk)
+    @Query("select u.externalAuthId from User u where u.externalAuthId in :externalAuthIds")
+    List<String> findExistingExternalAuthIds(@Param("externalAuthIds") Collection<String> externalAuthIds);
+
+    @Query("select u.username from User u where u.username in :usernames")
+    List<String> findExistingUsernames(@Param("usernames") Collection<String> usernames);
+
+    // Expects lower-cased emails and returns them lower-cased (uniqueness is on lower(email))
+    @Query("select lower(u.email) from User u where lower(u.email) in :emails")
+    List<String> findExistingEmails(@Param("emails") Collection<String> emails);
 
 }
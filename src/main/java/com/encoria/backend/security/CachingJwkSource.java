@@ -0,0 +1,240 @@
+package com.encoria.backend.security;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nimbusds.jose.KeySourceException;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.SecurityContext;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * In-memory JWK set for the identity provider, refreshed in the background (stale-while-revalidate).
+ * <ul>
+ *     <li>Requests are always served from the in-memory key set; the network is only touched on the
+ *     request path when there are no keys at all, or a token carries an unknown 'kid' (key rotation).</li>
+ *     <li>A background thread re-fetches the set every {@code refreshInterval}; failures keep the last good set.</li>
+ *     <li>The last good set is persisted to {@code cacheFile}, so a restarted node can validate tokens
+ *     before its first fetch succeeds.</li>
+ * </ul>
+ * The JWKS location is taken from {@code jwksUri} when set, otherwise from the issuer's OIDC discovery document.
+ * Fetches are single-flight and hold no lock: callers arriving while one is running wait on its future, so no
+ * thread (virtual or not) blocks on a monitor during the HTTP calls.
+ */
+@Slf4j
+public class CachingJwkSource implements JWKSource<SecurityContext>, AutoCloseable {
+
+    private final String issuerUri;
+    private final URI configuredJwksUri;
+    private final Path cacheFile;
+    private final Duration refreshInterval;
+    private final Duration minRefreshInterval;
+    private final HttpClient httpClient;
+    private final Duration requestTimeout;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ScheduledExecutorService refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "jwks-refresher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile JWKSet jwkSet;
+    private volatile URI jwksUri;
+    private volatile Instant lastFetchAttempt = Instant.EPOCH;
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    private final AtomicReference<CompletableFuture<JWKSet>> inFlight = new AtomicReference<>();
+
+    public CachingJwkSource(String issuerUri, String jwksUri, Path cacheFile,
+                            Duration refreshInterval, Duration minRefreshInterval, Duration requestTimeout) {
+        this.issuerUri = issuerUri;
+        this.configuredJwksUri = jwksUri == null || jwksUri.isBlank() ? null : URI.create(jwksUri);
+        this.cacheFile = cacheFile;
+        this.refreshInterval = refreshInterval;
+        this.minRefreshInterval = minRefreshInterval;
+        this.requestTimeout = requestTimeout;
+        this.httpClient = HttpClient.newBuilder().connectTimeout(requestTimeout).build();
+        this.jwkSet = readCacheFile();
+    }
+
+    // Without keys the first token needs a fetch, so refreshing starts right away. Keys from the cache file are good
+    // enough until the application is ready, and the first fetch (discovery, TLS handshake) then waits for
+    // startRefreshing() instead of competing with startup for CPU (see SecurityConfig)
+    public void start() {
+        if (jwkSet == null) {
+            startRefreshing();
+        }
+    }
+
+    // Fetch now and keep refreshing in the background; only the first call does anything
+    public void startRefreshing() {
+        if (refreshing.compareAndSet(false, true)) {
+            refresher.scheduleWithFixedDelay(this::refreshQuietly, 0, refreshInterval.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public void close() {
+        refresher.shutdownNow();
+    }
+
+    @Override
+    public List<JWK> get(JWKSelector jwkSelector, SecurityContext context) throws KeySourceException {
+        JWKSet current = jwkSet;
+        if (current != null) {
+            List<JWK> keys = jwkSelector.select(current);
+            if (!keys.isEmpty()) {
+                return keys;
+            }
+        }
+        // No keys yet, or an unknown 'kid': fetch synchronously (rate limited so bad tokens can't hammer the IdP)
+        JWKSet refreshed = refreshIfAllowed(current);
+        return refreshed != null ? jwkSelector.select(refreshed) : List.of();
+    }
+
+    // Exposed for health/diagnostics
+    public boolean hasKeys() {
+        return jwkSet != null;
+    }
+
+    private JWKSet refreshIfAllowed(JWKSet seen) throws KeySourceException {
+        try {
+            return refresh(seen, false).get();
+        } catch (ExecutionException e) {
+            throw new KeySourceException("Couldn't retrieve JWK set: " + e.getCause().getMessage(), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new KeySourceException("Interrupted while retrieving JWK set", e);
+        }
+    }
+
+    private void refreshQuietly() {
+        try {
+            refresh(jwkSet, true).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // Keep serving the last good key set
+            log.warn("JWK set refresh failed, keeping {} cached keys: {}",
+                    jwkSet != null ? jwkSet.getKeys().size() : 0, e.getCause().getMessage());
+        }
+    }
+
+    /**
+     * Starts a fetch, or joins the one already running. The first caller does the HTTP calls itself, without holding
+     * any lock; the new key set is published when it completes. Unless {@code scheduled}, the fetch is skipped when
+     * the keys changed since the caller saw {@code seen}, or the last attempt is younger than minRefreshInterval.
+     */
+    private CompletableFuture<JWKSet> refresh(JWKSet seen, boolean scheduled) {
+        CompletableFuture<JWKSet> mine = new CompletableFuture<>();
+        CompletableFuture<JWKSet> running = inFlight.compareAndExchange(null, mine);
+        if (running != null) {
+            return running;
+        }
+        try {
+            JWKSet current = jwkSet;
+            if (!scheduled && (current != seen || Instant.now().isBefore(lastFetchAttempt.plus(minRefreshInterval)))) {
+                // Another thread refreshed while we were looking, or we fetched moments ago
+                mine.complete(current);
+            } else {
+                mine.complete(fetchKeys());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            mine.completeExceptionally(e);
+        } catch (Exception e) {
+            mine.completeExceptionally(e);
+        } finally {
+            inFlight.set(null);
+        }
+        return mine;
+    }
+
+    private JWKSet fetchKeys() throws IOException, InterruptedException, ParseException {
+        lastFetchAttempt = Instant.now();
+        String body = fetch(resolveJwksUri());
+        JWKSet fetched = JWKSet.parse(body);
+        jwkSet = fetched;
+        writeCacheFile(fetched);
+        log.debug("Refreshed JWK set ({} keys)", fetched.getKeys().size());
+        return fetched;
+    }
+
+    private URI resolveJwksUri() throws IOException, InterruptedException {
+        if (configuredJwksUri != null) {
+            return configuredJwksUri;
+        }
+        if (jwksUri == null) {
+            String base = issuerUri.endsWith("/") ? issuerUri : issuerUri + "/";
+            JsonNode discovery = objectMapper.readTree(fetch(URI.create(base + ".well-known/openid-configuration")));
+            JsonNode location = discovery.get("jwks_uri");
+            if (location == null || !location.isTextual()) {
+                throw new IOException("OIDC discovery document for " + issuerUri + " has no jwks_uri");
+            }
+            jwksUri = URI.create(location.asText());
+        }
+        return jwksUri;
+    }
+
+    private String fetch(URI uri) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(uri).timeout(requestTimeout).GET().build();
+        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IOException("GET " + uri + " returned " + response.statusCode());
+        }
+        return response.body();
+    }
+
+    private JWKSet readCacheFile() {
+        if (cacheFile == null || !Files.isReadable(cacheFile)) {
+            return null;
+        }
+        try {
+            JWKSet cached = JWKSet.parse(Files.readString(cacheFile, StandardCharsets.UTF_8));
+            log.info("Loaded {} JWKs from {}", cached.getKeys().size(), cacheFile);
+            return cached;
+        } catch (IOException | ParseException e) {
+            log.warn("Ignoring unreadable JWK cache file {}: {}", cacheFile, e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeCacheFile(JWKSet keys) {
+        if (cacheFile == null) {
+            return;
+        }
+        try {
+            // Write to a temp file and move it over, so a crash never leaves a half-written key set
+            Path parent = cacheFile.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            Path tmp = Files.createTempFile(parent, cacheFile.getFileName().toString(), ".tmp");
+            // Public keys only (JWKSet.toString() drops private parts)
+            Files.writeString(tmp, keys.toString(true), StandardCharsets.UTF_8);
+            Files.move(tmp, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Couldn't persist JWK set to {}: {}", cacheFile, e.getMessage());
+        }
+    }
+}
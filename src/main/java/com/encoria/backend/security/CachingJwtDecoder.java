@@ -0,0 +1,119 @@
+package com.encoria.backend.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JwtDecoder wrapper that remembers successfully verified tokens, so a bearer token sent again
+ * skips signature verification and claim validation until it expires.
+ * <p>
+ * Only tokens accepted by the delegate (signature + issuer/audience/timestamp validators) are cached,
+ * keyed by a SHA-256 digest of the raw token, and each entry is dropped at the token's 'exp'.
+ * Tokens without 'exp' are never cached.
+ * Every decode is timed as "encoria.security.jwt.decode", tagged result=cached|verified|rejected.
+ */
+public class CachingJwtDecoder implements JwtDecoder {
+
+    public static final String CACHE_NAME = "verified-jwts";
+    public static final String TIMER_NAME = "encoria.security.jwt.decode";
+
+    private final JwtDecoder delegate;
+    private final Cache<String, Jwt> cache;
+    // One timer per outcome, created up front so recording doesn't allocate
+    private final Timer cachedTimer;
+    private final Timer verifiedTimer;
+    private final Timer rejectedTimer;
+
+    public CachingJwtDecoder(JwtDecoder delegate, long maxSize, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new UntilTokenExpiry(Clock.systemUTC()))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+        this.cachedTimer = timer(meterRegistry, "cached");
+        this.verifiedTimer = timer(meterRegistry, "verified");
+        this.rejectedTimer = timer(meterRegistry, "rejected");
+    }
+
+    private static Timer timer(MeterRegistry meterRegistry, String result) {
+        return Timer.builder(TIMER_NAME)
+                .description("Bearer token decoding, from the raw token to a validated Jwt")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Jwt decode(String token) throws JwtException {
+        long started = System.nanoTime();
+        String key = digest(token);
+        Jwt cached = cache.getIfPresent(key);
+        if (cached != null) {
+            cachedTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            return cached;
+        }
+        // Let the delegate throw for invalid tokens; failures are never cached
+        Jwt jwt;
+        try {
+            jwt = delegate.decode(token);
+        } catch (JwtException e) {
+            rejectedTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            throw e;
+        }
+        if (jwt.getExpiresAt() != null) {
+            cache.put(key, jwt);
+        }
+        verifiedTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        return jwt;
+    }
+
+    private static String digest(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+            return HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 is mandatory on every JVM
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Each entry lives exactly until the token's 'exp' claim
+    private record UntilTokenExpiry(Clock clock) implements Expiry<String, Jwt> {
+
+        @Override
+        public long expireAfterCreate(String key, Jwt jwt, long currentTime) {
+            Instant expiresAt = jwt.getExpiresAt();
+            if (expiresAt == null) {
+                return 0;
+            }
+            return Math.max(0, Duration.between(clock.instant(), expiresAt).toNanos());
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, Jwt jwt, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, jwt, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, Jwt jwt, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.encoria.backend.security;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * In-process {@link RevocationBus}: notices are delivered synchronously to the listeners of this JVM.
+ * With several nodes on this bus, the others only see a change at their next resync.
+ */
+public class LocalRevocationBus implements RevocationBus {
+
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void publish(RevocationNotice notice) {
+        listeners.forEach(listener -> listener.onNotice(notice));
+    }
+
+    @Override
+    public void subscribe(Listener listener) {
+        listeners.add(listener);
+    }
+}
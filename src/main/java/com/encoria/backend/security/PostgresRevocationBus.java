@@ -0,0 +1,123 @@
+package com.encoria.backend.security;
+
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * {@link RevocationBus} over Postgres LISTEN/NOTIFY: notices are sent with pg_notify on the primary and every
+ * node (this one included) receives them on a dedicated connection, outside the Hikari pool. Delivery takes
+ * a few milliseconds. NOTIFY isn't durable, so listeners are told to resync each time the connection is
+ * (re)established.
+ */
+@Slf4j
+public class PostgresRevocationBus implements RevocationBus, Closeable {
+
+    static final String CHANNEL = "encoria_revocations";
+    // How long a poll waits for notifications; only bounds how quickly close() is noticed
+    private static final int POLL_TIMEOUT_MS = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String url;
+    private final String username;
+    private final String password;
+    private final Duration reconnectDelay;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final Thread listenerThread = new Thread(this::listen, "revocation-listener");
+    private volatile boolean running = true;
+
+    public PostgresRevocationBus(JdbcTemplate jdbcTemplate, String url, String username, String password,
+                                 Duration reconnectDelay) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.url = url;
+        this.username = username;
+        this.password = password;
+        this.reconnectDelay = reconnectDelay;
+        this.listenerThread.setDaemon(true);
+    }
+
+    public void start() {
+        listenerThread.start();
+    }
+
+    // Runs on the caller's transaction when there is one (same DataSource as JPA): Postgres holds the NOTIFY
+    // until that transaction commits and drops it on rollback
+    @Override
+    public void publish(RevocationNotice notice) {
+        jdbcTemplate.query("select pg_notify(?, ?)", rs -> null, CHANNEL, notice.encode());
+    }
+
+    @Override
+    public boolean deliversOnCommit() {
+        return true;
+    }
+
+    @Override
+    public void subscribe(Listener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        listenerThread.interrupt();
+    }
+
+    private void listen() {
+        while (running) {
+            try (Connection connection = DriverManager.getConnection(url, username, password);
+                 Statement statement = connection.createStatement()) {
+                statement.execute("LISTEN " + CHANNEL);
+                log.info("Listening for revocation notices on {}", CHANNEL);
+                listeners.forEach(Listener::onReconnect);
+
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(POLL_TIMEOUT_MS);
+                    if (notifications != null) {
+                        for (PGNotification notification : notifications) {
+                            deliver(notification.getParameter());
+                        }
+                    }
+                }
+            } catch (SQLException | RuntimeException e) {
+                if (!running) {
+                    return;
+                }
+                log.warn("Revocation listener lost its connection, reconnecting in {}: {}", reconnectDelay, e.getMessage());
+                try {
+                    Thread.sleep(reconnectDelay.toMillis());
+                } catch (InterruptedException interrupted) {
+                    return; // close()
+                }
+            }
+        }
+    }
+
+    private void deliver(String payload) {
+        RevocationNotice notice;
+        try {
+            notice = RevocationNotice.decode(payload);
+        } catch (IllegalArgumentException e) {
+            log.warn("Ignoring revocation notice: {}", e.getMessage());
+            return;
+        }
+        for (Listener listener : listeners) {
+            try {
+                listener.onNotice(notice);
+            } catch (RuntimeException e) {
+                log.warn("Revocation listener failed on {}", payload, e);
+            }
+        }
+    }
+}
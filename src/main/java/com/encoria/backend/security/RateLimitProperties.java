@@ -0,0 +1,28 @@
+package com.encoria.backend.security;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * encoria.security.rate-limit (see {@link RateLimiter}).
+ *
+ * @param maxClients buckets kept in memory across all routes; the least recently used are dropped beyond that
+ * @param routes     checked in order, the first match applies; requests matching none are not limited
+ */
+@ConfigurationProperties("encoria.security.rate-limit")
+public record RateLimitProperties(@DefaultValue("true") boolean enabled,
+                                  @DefaultValue("100000") long maxClients,
+                                  @DefaultValue List<Route> routes) {
+
+    /**
+     * {@code limit} requests per {@code period} per client, all of which may arrive at once.
+     *
+     * @param method HTTP method, or empty for any
+     * @param path   path pattern, e.g. /public/**
+     */
+    public record Route(String name, @DefaultValue("") String method, String path, int limit, Duration period) {
+    }
+}
@@ -0,0 +1,142 @@
+package com.encoria.backend.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.server.PathContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.web.util.UrlPathHelper;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Per-client request limits for the routes in {@link RateLimitProperties}, applied by SecurityConfig right after the
+ * bearer token is authenticated. Clients are the JWT 'sub' when there is one, the remote address otherwise
+ * (behind a proxy, set server.forward-headers-strategy so that is the client's, not the proxy's).
+ * <p>
+ * Being after the bearer filter, it runs once the JWT converter has resolved the user. Repeated requests of a
+ * registered subject don't reach the database there because CachingJwtDecoder and ResolvedUserCache answer them
+ * from memory. Subjects without a profile cost a lookup per negative-ttl, plus the profile filter's recheck on the
+ * primary, which ResolvedUserCache also holds to once per negative-ttl unless the subject just signed up.
+ * The limiter shields what comes after it.
+ * <p>
+ * Each (route, client) pair has a {@link TokenBucket}, kept in a bounded Caffeine map. A bucket left alone for the
+ * longest route period is full again, so entries idle that long are dropped without changing any outcome; past
+ * {@code max-clients} the least recently used go first, which at worst hands a flood of new clients fresh buckets.
+ */
+@Slf4j
+@Component
+public class RateLimiter {
+
+    /**
+     * A configured route, with its limit as GCRA parameters (see {@link TokenBucket}).
+     */
+    public static final class Route {
+        private final int index;
+        private final String name;
+        private final String method;
+        private final PathPattern pattern;
+        private final long intervalNanos;
+        private final long burstNanos;
+        private final Counter rejections;
+
+        Route(int index, RateLimitProperties.Route config, MeterRegistry meterRegistry) {
+            if (config.limit() < 1 || config.period() == null || config.period().isNegative() || config.period().isZero()) {
+                throw new IllegalArgumentException("Rate limit route '" + config.name() + "' needs a positive limit and period");
+            }
+            this.index = index;
+            this.name = config.name();
+            this.method = config.method();
+            this.pattern = PathPatternParser.defaultInstance.parse(config.path());
+            this.intervalNanos = config.period().toNanos() / config.limit();
+            this.burstNanos = intervalNanos * config.limit();
+            this.rejections = Counter.builder("encoria.security.rate-limit.rejections")
+                    .description("Requests answered with 429 because the client exceeded the route's limit")
+                    .tag("route", name)
+                    .register(meterRegistry);
+        }
+
+        public String name() {
+            return name;
+        }
+
+        boolean matches(String requestMethod, PathContainer path) {
+            return (method.isEmpty() || method.equalsIgnoreCase(requestMethod)) && pattern.matches(path);
+        }
+    }
+
+    private record Key(int route, String client) {
+    }
+
+    private final boolean enabled;
+    private final List<Route> routes;
+    private final Cache<Key, TokenBucket> buckets;
+
+    public RateLimiter(RateLimitProperties properties, MeterRegistry meterRegistry) {
+        this.enabled = properties.enabled() && !properties.routes().isEmpty();
+        this.routes = IntStream.range(0, properties.routes().size())
+                .mapToObj(index -> new Route(index, properties.routes().get(index), meterRegistry))
+                .toList();
+        Duration longestPeriod = properties.routes().stream()
+                .map(RateLimitProperties.Route::period)
+                .max(Duration::compareTo)
+                .orElse(Duration.ofMinutes(1));
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(properties.maxClients())
+                .expireAfterAccess(longestPeriod)
+                .build();
+        Gauge.builder("encoria.security.rate-limit.clients", buckets, Cache::estimatedSize)
+                .description("Clients with a token bucket in memory, across all routes")
+                .register(meterRegistry);
+        if (enabled) {
+            log.info("Rate limiting {} routes: {}", routes.size(), routes.stream().map(Route::name).toList());
+        }
+    }
+
+    /**
+     * The first route matching the request's path as the application sees it: decoded, without the context path,
+     * ';' parameters (;jsessionid=...) or doubled slashes, so another spelling of a URL can't dodge its limit.
+     */
+    public Route route(HttpServletRequest request) {
+        return route(request.getMethod(), UrlPathHelper.defaultInstance.getPathWithinApplication(request));
+    }
+
+    /**
+     * The first route matching an already normalized path, or null when the request isn't limited.
+     */
+    public Route route(String method, String path) {
+        if (!enabled) {
+            return null;
+        }
+        PathContainer container = PathContainer.parsePath(path);
+        for (Route route : routes) {
+            if (route.matches(method, container)) {
+                return route;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Takes a token from {@code client}'s bucket for {@code route}.
+     *
+     * @param now System.nanoTime()
+     * @return 0 when the request may proceed, otherwise the nanoseconds until it would be allowed
+     */
+    public long tryAcquire(Route route, String client, long now) {
+        TokenBucket bucket = buckets.get(new Key(route.index, client), key -> new TokenBucket());
+        long wait = bucket.tryAcquire(now, route.intervalNanos, route.burstNanos);
+        if (wait > 0) {
+            route.rejections.increment();
+        }
+        return wait;
+    }
+}
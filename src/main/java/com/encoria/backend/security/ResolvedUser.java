@@ -0,0 +1,77 @@
+package com.encoria.backend.security;
+
+import com.encoria.backend.model.User;
+import com.encoria.backend.model.UserAuthView;
+import com.encoria.backend.model.UserRole;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Immutable snapshot of the local user behind a JWT 'sub' claim.
+ * Resolved once per request (and cached across requests) so the security chain
+ * and controllers don't need to hit the database again for the same row.
+ */
+public record ResolvedUser(
+        String externalAuthId,
+        Long id,
+        UUID uuid,
+        String username,
+        String roleCode,
+        boolean enabled,
+        boolean nonLocked,
+        List<GrantedAuthority> authorities
+) {
+
+    // Snapshot for a 'sub' that has no row in our database yet (profile setup pending)
+    public static ResolvedUser unregistered(String externalAuthId) {
+        return new ResolvedUser(externalAuthId, null, null, null, null, false, false, Collections.emptyList());
+    }
+
+    public static ResolvedUser from(User user) {
+        UserRole role = user.getRole();
+        String roleCode = role != null ? role.getCode() : null;
+        return new ResolvedUser(
+                user.getExternalAuthId(),
+                user.getId(),
+                user.getUuid(),
+                user.getUsername(),
+                roleCode,
+                user.isEnabled(),
+                user.isNonLocked(),
+                authorities(roleCode)
+        );
+    }
+
+    public static ResolvedUser from(UserAuthView view) {
+        return new ResolvedUser(
+                view.externalAuthId(),
+                view.id(),
+                view.uuid(),
+                view.username(),
+                view.roleCode(),
+                view.enabled(),
+                view.nonLocked(),
+                authorities(view.roleCode())
+        );
+    }
+
+    private static List<GrantedAuthority> authorities(String roleCode) {
+        return roleCode != null
+                // Create Spring Security authorities (prefix with ROLE_ is standard)
+                ? List.of(new SimpleGrantedAuthority("ROLE_" + roleCode.toUpperCase()))
+                : Collections.emptyList();
+    }
+
+    public boolean isRegistered() {
+        return id != null;
+    }
+
+    // Adapt the logic based on your definition of "complete" (e.g., username != null)
+    public boolean isProfileComplete() {
+        return isRegistered() && username != null;
+    }
+}
@@ -0,0 +1,22 @@
+package com.encoria.backend.security;
+
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+
+/**
+ * JwtAuthenticationToken that also carries the {@link ResolvedUser} looked up for the token's subject.
+ * The principal stays the {@link Jwt}, so {@code @AuthenticationPrincipal Jwt} keeps working.
+ */
+public class ResolvedUserAuthenticationToken extends JwtAuthenticationToken {
+
+    private final ResolvedUser user;
+
+    public ResolvedUserAuthenticationToken(Jwt jwt, ResolvedUser user) {
+        super(jwt, user.authorities(), jwt.getSubject());
+        this.user = user;
+    }
+
+    public ResolvedUser getUser() {
+        return user;
+    }
+}
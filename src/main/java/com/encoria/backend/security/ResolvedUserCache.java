@@ -0,0 +1,135 @@
+package com.encoria.backend.security;
+
+import com.encoria.backend.config.ReadYourWrites;
+import com.encoria.backend.repository.UserRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded, TTL-evicting cache of {@link ResolvedUser} snapshots keyed by the JWT 'sub' claim.
+ * Unregistered subjects are only cached for {@code negative-ttl} (about a second): the signup that ends that state
+ * may be handled by another node, which can't invalidate this node's entry. Before a request is refused as
+ * unregistered, {@link #recheckUnregistered} asks the primary again: every time for a subject that just wrote
+ * (signed up, see ReadYourWrites), otherwise at most once per {@code negative-ttl}.
+ * Hit/miss/eviction counters are published as the "cache.*" meters with cache=resolved-users,
+ * and each database lookup on a miss is timed as "encoria.security.user.resolve" (result=found|unregistered).
+ */
+@Slf4j
+@Component
+public class ResolvedUserCache {
+
+    public static final String CACHE_NAME = "resolved-users";
+    public static final String TIMER_NAME = "encoria.security.user.resolve";
+
+    private final UserRepository userRepository;
+    private final ReadYourWrites readYourWrites;
+    private final Cache<String, ResolvedUser> cache;
+    // Subjects rechecked within the last negative-ttl (without a recent write)
+    private final Cache<String, Boolean> recentRechecks;
+    private final Timer foundTimer;
+    private final Timer unregisteredTimer;
+
+    public ResolvedUserCache(UserRepository userRepository,
+                             ReadYourWrites readYourWrites,
+                             MeterRegistry meterRegistry,
+                             @Value("${encoria.security.resolved-user-cache.max-size:10000}") long maxSize,
+                             @Value("${encoria.security.resolved-user-cache.ttl:60s}") Duration ttl,
+                             @Value("${encoria.security.resolved-user-cache.negative-ttl:1s}") Duration negativeTtl) {
+        this.userRepository = userRepository;
+        this.readYourWrites = readYourWrites;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new Expiry<String, ResolvedUser>() {
+                    @Override
+                    public long expireAfterCreate(String externalAuthId, ResolvedUser user, long currentTime) {
+                        return (user.isRegistered() ? ttl : negativeTtl).toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String externalAuthId, ResolvedUser user, long currentTime, long currentDuration) {
+                        return expireAfterCreate(externalAuthId, user, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String externalAuthId, ResolvedUser user, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        this.recentRechecks = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(negativeTtl)
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+        this.foundTimer = Timer.builder(TIMER_NAME).tag("result", "found").register(meterRegistry);
+        this.unregisteredTimer = Timer.builder(TIMER_NAME).tag("result", "unregistered").register(meterRegistry);
+    }
+
+    public ResolvedUser resolve(String externalAuthId) {
+        return cache.get(externalAuthId, this::load);
+    }
+
+    /**
+     * Looks an unregistered subject up again on the primary, skipping the cache: the cached snapshot may predate a
+     * signup committed through another node. A user found now replaces the cached entry.
+     * <p>
+     * Only a subject that just wrote is rechecked on every call. Anyone else is rechecked at most once per
+     * negative-ttl and otherwise gets the cached answer, so a client retrying in a loop without a profile
+     * can't turn every 403 into a read on the primary.
+     */
+    public ResolvedUser recheckUnregistered(String externalAuthId) {
+        if (!readYourWrites.isRecentWriter(externalAuthId)
+                && recentRechecks.asMap().putIfAbsent(externalAuthId, Boolean.TRUE) != null) {
+            return resolve(externalAuthId);
+        }
+        cache.invalidate(externalAuthId);
+        try (ReadYourWrites.Pin pin = ReadYourWrites.pinToPrimary()) {
+            return resolve(externalAuthId);
+        }
+    }
+
+    public void invalidate(String externalAuthId) {
+        cache.invalidate(externalAuthId);
+    }
+
+    /**
+     * Invalidate once the surrounding transaction commits, so a concurrent request can't
+     * re-populate the entry with the pre-commit state. Falls back to immediate invalidation.
+     */
+    public void invalidateAfterCommit(String externalAuthId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            invalidate(externalAuthId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                invalidate(externalAuthId);
+            }
+        });
+    }
+
+    private ResolvedUser load(String externalAuthId) {
+        log.debug("Resolving user for sub {}", externalAuthId);
+        long started = System.nanoTime();
+        // From the primary right after signup, so a lagging replica can't cache the user as unregistered
+        ResolvedUser resolved = readYourWrites.read(externalAuthId, () -> userRepository.findAuthViewByExternalAuthId(externalAuthId))
+                .map(ResolvedUser::from)
+                .orElseGet(() -> ResolvedUser.unregistered(externalAuthId));
+        (resolved.isRegistered() ? foundTimer : unregisteredTimer).record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        return resolved;
+    }
+}
@@ -0,0 +1,32 @@
+package com.encoria.backend.security;
+
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.security.authentication.AbstractAuthenticationToken;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+
+import java.util.Collections;
+
+/**
+ * Resolves the local user once per request (backed by {@link ResolvedUserCache}) and attaches it
+ * to the Authentication, so the profile filter and controllers don't query the database again.
+ */
+public class ResolvedUserJwtAuthenticationConverter implements Converter<Jwt, AbstractAuthenticationToken> {
+
+    private final ResolvedUserCache resolvedUserCache;
+
+    public ResolvedUserJwtAuthenticationConverter(ResolvedUserCache resolvedUserCache) {
+        this.resolvedUserCache = resolvedUserCache;
+    }
+
+    @Override
+    public AbstractAuthenticationToken convert(Jwt jwt) {
+        String externalAuthId = jwt.getSubject(); // 'sub' claim is the standard identifier
+        if (externalAuthId == null) {
+            return new JwtAuthenticationToken(jwt, Collections.emptyList());
+        }
+        // Authorities come from the user's role; unknown users get none
+        // (ProfileCompletionFilter should prevent access anyway)
+        return new ResolvedUserAuthenticationToken(jwt, resolvedUserCache.resolve(externalAuthId));
+    }
+}
@@ -0,0 +1,26 @@
+package com.encoria.backend.security;
+
+/**
+ * Carries {@link RevocationNotice}s to every node (the sender included). {@link PostgresRevocationBus} uses
+ * LISTEN/NOTIFY on the primary; {@link LocalRevocationBus} only reaches the current JVM (single node, tests).
+ */
+public interface RevocationBus {
+
+    void publish(RevocationNotice notice);
+
+    // true: publish() joins the caller's transaction, and the notice only goes out if that transaction commits
+    default boolean deliversOnCommit() {
+        return false;
+    }
+
+    void subscribe(Listener listener);
+
+    interface Listener {
+
+        void onNotice(RevocationNotice notice);
+
+        // Notices may have been missed (e.g. the bus lost its connection): reload the full state
+        default void onReconnect() {
+        }
+    }
+}
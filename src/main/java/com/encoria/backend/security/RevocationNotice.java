@@ -0,0 +1,20 @@
+package com.encoria.backend.security;
+
+/**
+ * A user's access changed: {@code revoked} when they were disabled or locked, not revoked when they got it back.
+ * Sent between nodes by a {@link RevocationBus} as a short text payload ({@code <userId>:<0|1>:<publishedAt>}).
+ */
+public record RevocationNotice(long userId, boolean revoked, long publishedAt) {
+
+    public String encode() {
+        return userId + ":" + (revoked ? 1 : 0) + ":" + publishedAt;
+    }
+
+    public static RevocationNotice decode(String payload) {
+        String[] parts = payload.split(":");
+        if (parts.length != 3) {
+            throw new IllegalArgumentException("Malformed revocation notice: " + payload);
+        }
+        return new RevocationNotice(Long.parseLong(parts[0]), "1".equals(parts[1]), Long.parseLong(parts[2]));
+    }
+}
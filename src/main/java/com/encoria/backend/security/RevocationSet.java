@@ -0,0 +1,211 @@
+package com.encoria.backend.security;
+
+import com.encoria.backend.config.ReadYourWrites;
+import com.encoria.backend.repository.UserRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ids of disabled or locked users, checked by SecurityConfig on every authenticated request without a database read.
+ * <p>
+ * Loaded at startup, then kept current by {@link RevocationNotice}s on the {@link RevocationBus}: the node making a
+ * change applies it at once, the others when the notice arrives. A full reload every {@code resync-interval}, and
+ * whenever the bus reconnects, repairs whatever a lost notice left behind. Held as a sorted long[] that is replaced
+ * on each change (8 bytes per revoked user, lock-free lookups).
+ */
+@Slf4j
+@Component
+public class RevocationSet implements RevocationBus.Listener {
+
+    private final UserRepository userRepository;
+    private final RevocationBus bus;
+    private final Duration resyncInterval;
+    private final Timer propagation;
+
+    private volatile long[] revoked = new long[0];
+    // Notices that arrived while a resync was loading, re-applied on top of what it loaded (guarded by this)
+    private List<RevocationNotice> duringResync;
+    private final Object resyncLock = new Object();
+
+    private final ScheduledExecutorService resyncer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "revocation-resync");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public RevocationSet(UserRepository userRepository,
+                         RevocationBus bus,
+                         MeterRegistry meterRegistry,
+                         @Value("${encoria.security.revocation.resync-interval:5m}") Duration resyncInterval) {
+        this.userRepository = userRepository;
+        this.bus = bus;
+        this.resyncInterval = resyncInterval;
+        this.propagation = Timer.builder("encoria.security.revocation.propagation")
+                .description("Time from a revocation change being published to this node applying it")
+                .register(meterRegistry);
+        Gauge.builder("encoria.security.revocation.users", this, set -> set.revoked.length)
+                .description("Disabled or locked users currently refused")
+                .register(meterRegistry);
+        bus.subscribe(this);
+    }
+
+    // Before the web server takes requests, so nobody is let through on an empty set
+    @PostConstruct
+    public void load() {
+        resync();
+        log.info("Revocation set loaded with {} disabled/locked users", revoked.length);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startResync() {
+        long interval = resyncInterval.toMillis();
+        resyncer.scheduleWithFixedDelay(this::resyncQuietly, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        resyncer.shutdownNow();
+    }
+
+    public boolean isRevoked(long userId) {
+        return Arrays.binarySearch(revoked, userId) >= 0;
+    }
+
+    /**
+     * Applies the change here once the surrounding transaction commits (immediately without one) and announces it to
+     * the other nodes. A bus that {@link RevocationBus#deliversOnCommit() delivers on commit} gets the notice inside
+     * the transaction, so it goes out with the change or not at all; any other bus gets it after the commit.
+     * If the bus is down, the other nodes pick the change up at their next resync.
+     */
+    public void publishAfterCommit(long userId, boolean revoked) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            RevocationNotice notice = new RevocationNotice(userId, revoked, System.currentTimeMillis());
+            apply(notice);
+            send(notice);
+            return;
+        }
+        if (bus.deliversOnCommit()) {
+            RevocationNotice notice = new RevocationNotice(userId, revoked, System.currentTimeMillis());
+            // Not caught: it shares the transaction's connection, which a failed NOTIFY leaves unable to commit anyway
+            bus.publish(notice);
+            afterCommit(() -> apply(notice));
+            return;
+        }
+        afterCommit(() -> {
+            RevocationNotice notice = new RevocationNotice(userId, revoked, System.currentTimeMillis());
+            apply(notice); // This node doesn't wait for its own notice to come back
+            send(notice);
+        });
+    }
+
+    private static void afterCommit(Runnable action) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private void send(RevocationNotice notice) {
+        try {
+            bus.publish(notice);
+        } catch (RuntimeException e) {
+            log.warn("Couldn't publish revocation of user {}, other nodes will pick it up when they resync: {}",
+                    notice.userId(), e.getMessage());
+        }
+    }
+
+    @Override
+    public void onNotice(RevocationNotice notice) {
+        apply(notice);
+        // Clamped, clocks of different nodes can disagree by a few ms
+        propagation.record(Math.max(0, System.currentTimeMillis() - notice.publishedAt()), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void onReconnect() {
+        resyncQuietly();
+    }
+
+    // Package-private for tests
+    void resync() {
+        synchronized (resyncLock) {
+            synchronized (this) {
+                duringResync = new ArrayList<>();
+            }
+            long[] loaded;
+            // From the primary: a lagging replica could bring back users that were just re-enabled, or drop new bans
+            try (ReadYourWrites.Pin pin = ReadYourWrites.pinToPrimary()) {
+                loaded = userRepository.findRevokedUserIds().stream().mapToLong(Long::longValue).sorted().toArray();
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    duringResync = null;
+                }
+                throw e;
+            }
+            synchronized (this) {
+                long[] next = loaded;
+                for (RevocationNotice notice : duringResync) {
+                    next = applyTo(next, notice);
+                }
+                revoked = next;
+                duringResync = null;
+            }
+        }
+    }
+
+    private void resyncQuietly() {
+        try {
+            resync();
+        } catch (RuntimeException e) {
+            log.warn("Couldn't reload disabled/locked users, keeping the current set: {}", e.getMessage());
+        }
+    }
+
+    private synchronized void apply(RevocationNotice notice) {
+        if (duringResync != null) {
+            duringResync.add(notice);
+        }
+        revoked = applyTo(revoked, notice);
+    }
+
+    // Copy with the user added or removed (returns the same array when nothing changes)
+    private static long[] applyTo(long[] ids, RevocationNotice notice) {
+        int index = Arrays.binarySearch(ids, notice.userId());
+        if (notice.revoked() == index >= 0) {
+            return ids;
+        }
+        long[] next;
+        if (notice.revoked()) {
+            int insertAt = -index - 1;
+            next = new long[ids.length + 1];
+            System.arraycopy(ids, 0, next, 0, insertAt);
+            next[insertAt] = notice.userId();
+            System.arraycopy(ids, insertAt, next, insertAt + 1, ids.length - insertAt);
+        } else {
+            next = new long[ids.length - 1];
+            System.arraycopy(ids, 0, next, 0, index);
+            System.arraycopy(ids, index + 1, next, index, ids.length - index - 1);
+        }
+        return next;
+    }
+}
@@ -0,0 +1,37 @@
+package com.encoria.backend.security;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket in a single AtomicLong, in its GCRA form: instead of a token count and a last-refill time
+ * it keeps the instant at which the bucket will be full again. A request pushes that instant one
+ * {@code interval} (the time to earn one token) further, and is refused when it would land more than {@code burst}
+ * (the time to earn a full bucket) ahead of now.
+ * <p>
+ * One CAS per request; a thread that loses a race retries against the new value, nobody blocks. The limit
+ * is passed in by the caller (it belongs to the route, not to each client's bucket).
+ */
+public final class TokenBucket {
+
+    // System.nanoTime() at which the bucket is full again; anything in the past means full
+    private final AtomicLong fullAt = new AtomicLong(Long.MIN_VALUE);
+
+    /**
+     * Takes one token.
+     *
+     * @return 0 when the request may proceed, otherwise the nanoseconds until a token is available
+     */
+    public long tryAcquire(long now, long intervalNanos, long burstNanos) {
+        while (true) {
+            long current = fullAt.get();
+            long next = Math.max(current, now) + intervalNanos;
+            long wait = next - now - burstNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (fullAt.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+}
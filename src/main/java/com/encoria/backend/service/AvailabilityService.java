@@ -0,0 +1,104 @@
+package com.encoria.backend.service;
+
+import com.encoria.backend.model.UserIndexEntry;
+import com.encoria.backend.repository.UserRepository;
+import com.encoria.backend.util.BloomFilter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Locale;
+
+/**
+ * Username/email availability checks for the signup form.
+ * <p>
+ * Normalized usernames and emails are kept in two Bloom filters, fed by {@link UserIndexer}
+ * (a streaming pass over the users table after startup, then every write on this node, and a periodic catch-up
+ * with writes through other nodes). A negative from the filter is answered as "available" without a query; it can
+ * only be wrong about a name taken on another node within the last catch-up interval, and signup still enforces
+ * uniqueness through the constraints. Possible positives fall through to {@code existsByUsername}/{@code existsByEmail}.
+ * Until the initial build finishes every check goes to the database.
+ */
+@Slf4j
+@Service
+public class AvailabilityService implements UserIndex {
+
+    private final UserRepository userRepository;
+    private final BloomFilter usernames;
+    private final BloomFilter emails;
+    private final Counter answeredFromIndex;
+    private final Counter answeredFromDatabase;
+
+    private volatile boolean ready;
+
+    public AvailabilityService(UserRepository userRepository,
+                               MeterRegistry meterRegistry,
+                               @Value("${encoria.users.availability.expected-users:1000000}") long expectedUsers,
+                               @Value("${encoria.users.availability.false-positive-rate:0.01}") double falsePositiveRate) {
+        this.userRepository = userRepository;
+        this.usernames = new BloomFilter(expectedUsers, falsePositiveRate);
+        this.emails = new BloomFilter(expectedUsers, falsePositiveRate);
+        this.answeredFromIndex = Counter.builder("encoria.availability.checks").tag("source", "index").register(meterRegistry);
+        this.answeredFromDatabase = Counter.builder("encoria.availability.checks").tag("source", "database").register(meterRegistry);
+    }
+
+    @Override
+    public void index(UserIndexEntry entry) {
+        add(entry.username(), entry.email());
+    }
+
+    @Override
+    public void bootstrapComplete(long userCount) {
+        ready = true;
+        log.info("Availability index ready with {} users ({} KB per filter, {} hashes)",
+                userCount, usernames.memoryBytes() / 1024, usernames.hashCount());
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    private void add(String username, String email) {
+        if (username != null) {
+            usernames.add(normalize(username));
+        }
+        if (email != null) {
+            emails.add(normalize(email));
+        }
+    }
+
+    public boolean isUsernameAvailable(String username) {
+        if (ready && !usernames.mightContain(normalize(username))) {
+            answeredFromIndex.increment();
+            return true;
+        }
+        answeredFromDatabase.increment();
+        return !userRepository.existsByUsername(username);
+    }
+
+    public boolean isEmailAvailable(String email) {
+        if (ready && !emails.mightContain(normalize(email))) {
+            answeredFromIndex.increment();
+            return true;
+        }
+        answeredFromDatabase.increment();
+        return !userRepository.existsByEmail(email);
+    }
+
+    // Index-only check (no query), e.g. for batch conflict checks: false only if the user definitely doesn't exist.
+    // Always true until the index is built.
+    public boolean mightHaveUsername(String username) {
+        return !ready || usernames.mightContain(normalize(username));
+    }
+
+    public boolean mightHaveEmail(String email) {
+        return !ready || emails.mightContain(normalize(email));
+    }
+
+    // Case/whitespace-insensitive, so the index only ever over-approximates the exact DB check
+    private static String normalize(String value) {
+        return value.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -1,47 +1,62 @@
 package com.encoria.backend.service;
 
-import com.encoria.backend.model.UserRole;
-import com.encoria.backend.repository.UserRoleRepository;
 import jakarta.annotation.PostConstruct; // Import PostConstruct
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j; // Optional: for logging
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collections;
+import java.util.List;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j // Optional: Lombok annotation for logging
 public class DataInitializationService {
 
-    private final UserRoleRepository userRoleRepository;
+    private final RoleCatalog roleCatalog;
+    private final JdbcTemplate jdbcTemplate;
 
     // Role Codes (Define constants for role codes)
     public static final String ROLE_USER = "USER";
     public static final String ROLE_ADMIN = "ADMIN"; // Example if you add more later
 
-    @PostConstruct // This method runs after the bean is created and dependencies are injected
-    @Transactional // Ensure database operations happen within a transaction
-    public void initializeData() {
-        log.info("Checking and initializing default data..."); // Optional logging
+    // Roles are seeded by the V3 migration (db/migration/common), which has run by the time this bean exists
+    private static final List<String> REQUIRED_ROLES = List.of(ROLE_USER, ROLE_ADMIN);
 
-        // Initialize User Roles
-        initializeRole(ROLE_USER);
-        initializeRole(ROLE_ADMIN); // Add calls for other roles if needed
+    // All required roles in one statement; rows that already exist are skipped, so it can run any number of times
+    private static final String INSERT_MISSING_ROLES = """
+            insert into user_roles (id, code)
+            select nextval('user_roles_seq'), required.code
+            from (values %s) as required (code)
+            where not exists (select 1 from user_roles existing where existing.code = required.code)"""
+            .formatted(String.join(", ", Collections.nCopies(REQUIRED_ROLES.size(), "(?)")));
 
+    @PostConstruct // This method runs after the bean is created and dependencies are injected
+    public void initializeData() {
+        // Load the roles into the in-memory catalog: one query, and no writes when the seed is in place
+        RoleCatalog.Snapshot roles = roleCatalog.refresh();
+        if (!roles.byCode().keySet().containsAll(REQUIRED_ROLES)) {
+            insertMissingRoles();
+            roles = roleCatalog.refresh();
+        }
+        for (String roleCode : REQUIRED_ROLES) {
+            if (!roles.byCode().containsKey(roleCode)) {
+                throw new IllegalStateException("Role '" + roleCode + "' not found in database, have the migrations run?");
+            }
+        }
         log.info("Data initialization complete."); // Optional logging
     }
 
-    private void initializeRole(String roleCode) {
-        // Check if the role already exists
-        if (!userRoleRepository.findByCode(roleCode).isPresent()) {
-            // If not, create and save it
-            UserRole newRole = new UserRole();
-            newRole.setCode(roleCode);
-            // Note: ID will be generated by the sequence automatically upon saving
-            userRoleRepository.save(newRole);
-            log.info("Created default role: {}", roleCode); // Optional logging
-        } else {
-            log.info("Role {} already exists.", roleCode); // Optional logging
+    // Repairs a database whose seed rows went missing
+    private void insertMissingRoles() {
+        try {
+            int inserted = jdbcTemplate.update(INSERT_MISSING_ROLES, REQUIRED_ROLES.toArray());
+            log.warn("Inserted {} missing roles", inserted);
+        } catch (DataIntegrityViolationException e) {
+            // Another node starting at the same time inserted them first (uk_user_roles_code)
+            log.info("Missing roles were inserted concurrently: {}", e.getMessage());
         }
     }
-}
\ No newline at end of file
+}
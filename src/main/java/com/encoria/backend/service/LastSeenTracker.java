@@ -0,0 +1,183 @@
+package com.encoria.backend.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Write-behind "last seen" tracking for authenticated requests.
+ * <p>
+ * The request path only records user id -> latest activity in a map, so a user costs at most one UPDATE per
+ * flush no matter how many requests they make. A background thread drains the map every {@code flush-interval}
+ * into batched UPDATEs on users.last_seen_at. The map holds at most {@code max-pending} users (activity of
+ * further users is dropped until the next flush and counted), and whatever is left is flushed on shutdown.
+ */
+@Slf4j
+@Service
+public class LastSeenTracker {
+
+    private static final String UPDATE_SQL =
+            "update users set last_seen_at = ? where id = ? and (last_seen_at is null or last_seen_at < ?)";
+    // Repeat requests within this window don't touch the map at all (a plain read)
+    private static final long RESOLUTION_MS = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration flushInterval;
+    private final int maxPending;
+    private final int batchSize;
+
+    private final ConcurrentHashMap<Long, Long> pending = new ConcurrentHashMap<>();
+    // Time of the oldest activity not flushed yet (epoch millis), 0 when there is none
+    private final AtomicLong oldestPending = new AtomicLong();
+
+    private final DistributionSummary flushSize;
+    private final Timer flushLag;
+    private final Timer flushDuration;
+    private final Counter dropped;
+
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "last-seen-flusher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public LastSeenTracker(JdbcTemplate jdbcTemplate,
+                           TransactionTemplate transactionTemplate,
+                           MeterRegistry meterRegistry,
+                           @Value("${encoria.users.last-seen.flush-interval:30s}") Duration flushInterval,
+                           @Value("${encoria.users.last-seen.max-pending:100000}") int maxPending,
+                           @Value("${encoria.users.last-seen.batch-size:500}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.flushInterval = flushInterval;
+        this.maxPending = maxPending;
+        this.batchSize = batchSize;
+        this.flushSize = DistributionSummary.builder("encoria.users.last-seen.flush.size")
+                .description("Users written per flush")
+                .register(meterRegistry);
+        this.flushLag = Timer.builder("encoria.users.last-seen.flush.lag")
+                .description("Age of the oldest activity written by a flush")
+                .register(meterRegistry);
+        this.flushDuration = Timer.builder("encoria.users.last-seen.flush")
+                .register(meterRegistry);
+        this.dropped = Counter.builder("encoria.users.last-seen.dropped")
+                .description("Activity not recorded because max-pending users were already waiting for a flush")
+                .register(meterRegistry);
+        Gauge.builder("encoria.users.last-seen.pending", pending, Map::size).register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        long interval = flushInterval.toMillis();
+        flusher.scheduleWithFixedDelay(this::flushQuietly, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    // Runs after the web server has stopped taking requests, while the DataSource is still open
+    @PreDestroy
+    public void drain() {
+        flusher.shutdownNow();
+        int flushed = flushQuietly();
+        log.info("Flushed last-seen activity of {} users on shutdown", flushed);
+    }
+
+    public void record(long userId) {
+        long now = System.currentTimeMillis();
+        Long previous = pending.get(userId);
+        if (previous != null) {
+            if (previous < now - RESOLUTION_MS) {
+                pending.merge(userId, now, Math::max);
+            }
+            return;
+        }
+        // Soft cap: concurrent first records can overshoot by a few entries
+        if (pending.size() >= maxPending) {
+            dropped.increment();
+            return;
+        }
+        pending.merge(userId, now, Math::max);
+        oldestPending.compareAndSet(0, now);
+    }
+
+    private int flushQuietly() {
+        try {
+            return flush();
+        } catch (RuntimeException e) {
+            log.warn("Couldn't flush last-seen activity, will retry: {}", e.getMessage());
+            return 0;
+        }
+    }
+
+    // Package-private for tests
+    synchronized int flush() {
+        if (pending.isEmpty()) {
+            return 0;
+        }
+        long started = System.nanoTime();
+        long oldest = oldestPending.getAndSet(0);
+
+        // remove() hands each entry over atomically; activity recorded after that goes to the next flush
+        List<Map.Entry<Long, Long>> drained = new ArrayList<>(pending.size());
+        for (Long userId : pending.keySet()) {
+            Long seenAt = pending.remove(userId);
+            if (seenAt != null) {
+                drained.add(Map.entry(userId, seenAt));
+            }
+        }
+        // Same row order on every node, so concurrent flushes can't deadlock
+        drained.sort(Map.Entry.comparingByKey(Comparator.naturalOrder()));
+
+        for (int from = 0; from < drained.size(); from += batchSize) {
+            List<Map.Entry<Long, Long>> chunk = drained.subList(from, Math.min(from + batchSize, drained.size()));
+            try {
+                transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(UPDATE_SQL, toArgs(chunk)));
+            } catch (RuntimeException e) {
+                // Put this chunk and the rest back for the next attempt
+                drained.subList(from, drained.size()).forEach(entry -> pending.merge(entry.getKey(), entry.getValue(), Math::max));
+                oldestPending.compareAndSet(0, oldest);
+                throw e;
+            }
+        }
+
+        flushSize.record(drained.size());
+        if (oldest > 0) {
+            flushLag.record(System.currentTimeMillis() - oldest, TimeUnit.MILLISECONDS);
+        }
+        flushDuration.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        log.debug("Flushed last-seen activity of {} users", drained.size());
+        return drained.size();
+    }
+
+    private static List<Object[]> toArgs(List<Map.Entry<Long, Long>> chunk) {
+        List<Object[]> args = new ArrayList<>(chunk.size());
+        for (Map.Entry<Long, Long> entry : chunk) {
+            OffsetDateTime seenAt = OffsetDateTime.ofInstant(Instant.ofEpochMilli(entry.getValue()), ZoneOffset.UTC);
+            args.add(new Object[]{seenAt, entry.getKey(), seenAt});
+        }
+        return args;
+    }
+}
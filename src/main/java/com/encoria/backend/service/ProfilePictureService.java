@@ -0,0 +1,310 @@
+package com.encoria.backend.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Profile pictures stored on local disk, named after the SHA-256 of their content ({@code <hash>.jpg|png}),
+ * so a file never changes once written: its name is a strong ETag and it can be cached forever.
+ * <p>
+ * Uploads are streamed to a temp file in fixed-size chunks (never held in the heap) and moved into place.
+ * A square thumbnail ({@code <hash>-thumb.jpg|png}) is generated once per picture on a small bounded pool;
+ * if the pool is full, it is queued again the next time the thumbnail is requested.
+ */
+@Slf4j
+@Service
+public class ProfilePictureService {
+
+    // Path the pictures are served from by PictureController (public, like the profile cards that link them)
+    public static final String URL_PREFIX = "/public/pictures/";
+
+    private static final Pattern NAME = Pattern.compile("([0-9a-f]{64})(-thumb)?\\.(jpg|png)");
+    // What store() hands out; anything else in pictureUrl would be a link to somewhere else
+    private static final Pattern STORED_URL = Pattern.compile("^/public/pictures/[0-9a-f]{64}\\.(jpg|png)$");
+    private static final byte[] JPEG_MAGIC = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF};
+    private static final byte[] PNG_MAGIC = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+
+    private final Path directory;
+    private final long maxBytes;
+    private final int thumbnailSize;
+    private final long maxPixels;
+    private final ThreadPoolExecutor thumbnailer;
+    // Thumbnails queued or being generated, so each one is generated once
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+
+    private final Timer thumbnailTimer;
+    private final Counter thumbnailsRejected;
+    private final Counter thumbnailsFailed;
+
+    public ProfilePictureService(MeterRegistry meterRegistry,
+                                 @Value("${encoria.users.pictures.dir:${java.io.tmpdir}/encoria-pictures}") Path directory,
+                                 @Value("${encoria.users.pictures.max-bytes:5242880}") long maxBytes,
+                                 @Value("${encoria.users.pictures.thumbnail-size:256}") int thumbnailSize,
+                                 @Value("${encoria.users.pictures.max-pixels:40000000}") long maxPixels,
+                                 @Value("${encoria.users.pictures.thumbnail-workers:2}") int workers,
+                                 @Value("${encoria.users.pictures.thumbnail-queue:200}") int queueCapacity) throws IOException {
+        this.directory = Files.createDirectories(directory).toRealPath();
+        this.maxBytes = maxBytes;
+        this.thumbnailSize = thumbnailSize;
+        this.maxPixels = maxPixels;
+        AtomicInteger threads = new AtomicInteger();
+        this.thumbnailer = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "picture-thumbnailer-" + threads.incrementAndGet());
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY); // Background work, requests come first
+                    return thread;
+                });
+        this.thumbnailTimer = Timer.builder("encoria.users.pictures.thumbnail")
+                .description("Time to decode, scale and write a profile picture thumbnail")
+                .register(meterRegistry);
+        this.thumbnailsRejected = Counter.builder("encoria.users.pictures.thumbnail.rejected")
+                .description("Thumbnails not queued because the thumbnail pool was full (retried on the next request)")
+                .register(meterRegistry);
+        this.thumbnailsFailed = Counter.builder("encoria.users.pictures.thumbnail.failed")
+                .description("Pictures that couldn't be decoded or were too large to thumbnail")
+                .register(meterRegistry);
+    }
+
+    /** A picture file ready to be served. {@code immutable} is false while a thumbnail is stood in for by its original. */
+    public record Picture(Path path, String etag, MediaType contentType, boolean immutable) {
+    }
+
+    /** Thrown by {@link #store} when the body is larger than {@code max-bytes}. */
+    public static class PictureTooLargeException extends IllegalArgumentException {
+        PictureTooLargeException(long maxBytes) {
+            super("Picture exceeds the maximum size of " + maxBytes + " bytes.");
+        }
+    }
+
+    // A URL returned by store() (or of that shape), the only pictureUrl a profile may point at
+    public static boolean isStoredPictureUrl(String url) {
+        return STORED_URL.matcher(url).matches();
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Streams {@code body} to disk and queues its thumbnail.
+     *
+     * @return the URL the picture is served from
+     * @throws IllegalArgumentException if the body isn't a JPEG or PNG ({@link PictureTooLargeException} if too large)
+     */
+    public String store(InputStream body) throws IOException {
+        Path upload = Files.createTempFile(directory, "upload-", ".tmp");
+        try {
+            MessageDigest sha256 = sha256();
+            byte[] buffer = new byte[8192];
+            // The format is taken from the leading bytes, not from the declared Content-Type
+            int read = body.readNBytes(buffer, 0, PNG_MAGIC.length);
+            String extension = sniffExtension(buffer, read);
+            long size = 0;
+            try (OutputStream out = Files.newOutputStream(upload)) {
+                while (read > 0) {
+                    size += read;
+                    if (size > maxBytes) {
+                        throw new PictureTooLargeException(maxBytes);
+                    }
+                    sha256.update(buffer, 0, read);
+                    out.write(buffer, 0, read);
+                    read = body.read(buffer);
+                }
+            }
+
+            String name = HexFormat.of().formatHex(sha256.digest()) + "." + extension;
+            Path target = directory.resolve(name);
+            if (Files.exists(target)) {
+                Files.delete(upload); // Same picture uploaded before (by anyone), content-addressed
+            } else {
+                Files.move(upload, target, StandardCopyOption.ATOMIC_MOVE);
+            }
+            requestThumbnail(name);
+            return URL_PREFIX + name;
+        } finally {
+            Files.deleteIfExists(upload);
+        }
+    }
+
+    /**
+     * The picture or thumbnail behind a file name taken from a picture URL. A thumbnail that hasn't been
+     * generated yet is queued and its original served meanwhile (not immutable, the URL will change content).
+     */
+    public Optional<Picture> find(String name) {
+        Matcher matcher = NAME.matcher(name);
+        if (!matcher.matches()) {
+            return Optional.empty(); // Also keeps any path separator out of resolve()
+        }
+        MediaType contentType = matcher.group(3).equals("png") ? MediaType.IMAGE_PNG : MediaType.IMAGE_JPEG;
+        Path file = directory.resolve(name);
+        if (Files.isRegularFile(file)) {
+            return Optional.of(new Picture(file, etag(name), contentType, true));
+        }
+        if (matcher.group(2) == null) {
+            return Optional.empty();
+        }
+        String originalName = matcher.group(1) + "." + matcher.group(3);
+        Path original = directory.resolve(originalName);
+        if (!Files.isRegularFile(original)) {
+            return Optional.empty();
+        }
+        requestThumbnail(originalName);
+        return Optional.of(new Picture(original, etag(originalName), contentType, false));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        thumbnailer.shutdownNow(); // Unfinished thumbnails are generated on demand after the restart
+    }
+
+    private void requestThumbnail(String originalName) {
+        String thumbnailName = thumbnailName(originalName);
+        if (Files.exists(directory.resolve(thumbnailName)) || !pending.add(thumbnailName)) {
+            return;
+        }
+        try {
+            thumbnailer.execute(() -> {
+                try {
+                    thumbnailTimer.record(() -> writeThumbnail(originalName, thumbnailName));
+                } finally {
+                    pending.remove(thumbnailName);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pending.remove(thumbnailName);
+            thumbnailsRejected.increment();
+        }
+    }
+
+    private void writeThumbnail(String originalName, String thumbnailName) {
+        Path thumbnail = directory.resolve(thumbnailName);
+        boolean png = originalName.endsWith(".png");
+        try {
+            BufferedImage source = decode(directory.resolve(originalName));
+            if (source == null) {
+                thumbnailsFailed.increment();
+                return;
+            }
+            BufferedImage scaled = cropAndScale(source, png);
+            Path temp = Files.createTempFile(directory, "thumb-", ".tmp");
+            try {
+                ImageIO.write(scaled, png ? "png" : "jpeg", temp.toFile());
+                Files.move(temp, thumbnail, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            thumbnailsFailed.increment();
+            log.warn("Couldn't generate thumbnail {}: {}", thumbnailName, e.getMessage());
+        }
+    }
+
+    // Decodes with subsampling, so a large photo never takes more than ~(2 x thumbnail size)^2 pixels of heap
+    private BufferedImage decode(Path file) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(file.toFile())) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                log.warn("No image reader for picture {}", file.getFileName());
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                if ((long) width * height > maxPixels) {
+                    log.warn("Picture {} is {}x{}, not generating a thumbnail", file.getFileName(), width, height);
+                    return null;
+                }
+                ImageReadParam param = reader.getDefaultReadParam();
+                int step = Math.max(1, Math.min(width, height) / (thumbnailSize * 2));
+                param.setSourceSubsampling(step, step, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    // Centered square crop, scaled to thumbnail-size x thumbnail-size
+    private BufferedImage cropAndScale(BufferedImage source, boolean png) {
+        int side = Math.min(source.getWidth(), source.getHeight());
+        int x = (source.getWidth() - side) / 2;
+        int y = (source.getHeight() - side) / 2;
+        BufferedImage scaled = new BufferedImage(thumbnailSize, thumbnailSize,
+                png ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = scaled.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(source, 0, 0, thumbnailSize, thumbnailSize, x, y, x + side, y + side, null);
+        } finally {
+            graphics.dispose();
+        }
+        return scaled;
+    }
+
+    private static String thumbnailName(String originalName) {
+        int dot = originalName.lastIndexOf('.');
+        return originalName.substring(0, dot) + "-thumb" + originalName.substring(dot);
+    }
+
+    // Content-addressed names identify the bytes exactly
+    private static String etag(String name) {
+        return "\"" + name + "\"";
+    }
+
+    private static String sniffExtension(byte[] header, int length) {
+        if (length >= JPEG_MAGIC.length && Arrays.equals(header, 0, JPEG_MAGIC.length, JPEG_MAGIC, 0, JPEG_MAGIC.length)) {
+            return "jpg";
+        }
+        if (length >= PNG_MAGIC.length && Arrays.equals(header, 0, PNG_MAGIC.length, PNG_MAGIC, 0, PNG_MAGIC.length)) {
+            return "png";
+        }
+        throw new IllegalArgumentException("Only JPEG and PNG pictures are supported.");
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // Every JRE ships SHA-256
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.encoria.backend.service;
+
+import com.encoria.backend.model.UserSearchResult;
+import com.encoria.backend.repository.UserRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Public profiles (the {@link UserSearchResult} card) looked up by uuid in bulk, for services that render
+ * many users per page. Profiles are kept in a short-lived cache; misses are loaded in chunked IN queries
+ * on the projection and written out as each chunk arrives.
+ * <p>
+ * Each chunk is read in its own read-only transaction, so it goes to a replica and no connection is held
+ * while earlier chunks are written to a slow client.
+ */
+@Service
+public class PublicProfileService {
+
+    public static final String CACHE_NAME = "public-profiles";
+
+    private final UserRepository userRepository;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ObjectMapper objectMapper;
+    private final Cache<UUID, UserSearchResult> cache;
+    private final int maxIds;
+    private final int chunkSize;
+
+    public PublicProfileService(UserRepository userRepository,
+                                TransactionTemplate transactionTemplate,
+                                ObjectMapper objectMapper,
+                                MeterRegistry meterRegistry,
+                                @Value("${encoria.users.batch.max-ids:500}") int maxIds,
+                                @Value("${encoria.users.batch.chunk-size:100}") int chunkSize,
+                                @Value("${encoria.users.batch.cache-max-size:50000}") long cacheMaxSize,
+                                @Value("${encoria.users.batch.cache-ttl:30s}") Duration cacheTtl) {
+        this.userRepository = userRepository;
+        // Query methods on the repository aren't transactional themselves, and would go to the primary
+        this.readOnlyTransaction = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        this.readOnlyTransaction.setReadOnly(true);
+        this.objectMapper = objectMapper;
+        this.maxIds = maxIds;
+        this.chunkSize = chunkSize;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfterWrite(cacheTtl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    /**
+     * Writes the profiles of the given users to {@code out} as a JSON array: cached ones first, then the rest
+     * chunk by chunk, so the order doesn't follow the request. Duplicates are collapsed and unknown uuids left out.
+     *
+     * @throws IllegalArgumentException if the request is empty, too large or contains nulls (nothing is written)
+     */
+    public void writeProfiles(Collection<UUID> uuids, OutputStream out) throws IOException {
+        if (uuids == null || uuids.isEmpty() || uuids.size() > maxIds) {
+            throw new IllegalArgumentException("Provide between 1 and " + maxIds + " user ids.");
+        }
+        if (uuids.stream().anyMatch(Objects::isNull)) {
+            throw new IllegalArgumentException("User ids must not be null.");
+        }
+        Set<UUID> wanted = new LinkedHashSet<>(uuids);
+
+        try (JsonGenerator json = objectMapper.createGenerator(out)) {
+            json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET); // The container owns the response stream
+            json.writeStartArray();
+            Map<UUID, UserSearchResult> cached = cache.getAllPresent(wanted);
+            for (UserSearchResult profile : cached.values()) {
+                json.writeObject(profile);
+            }
+            json.flush();
+
+            List<UUID> missing = new ArrayList<>(wanted.size() - cached.size());
+            for (UUID uuid : wanted) {
+                if (!cached.containsKey(uuid)) {
+                    missing.add(uuid);
+                }
+            }
+            for (int from = 0; from < missing.size(); from += chunkSize) {
+                List<UUID> chunk = missing.subList(from, Math.min(from + chunkSize, missing.size()));
+                List<UserSearchResult> profiles =
+                        readOnlyTransaction.execute(status -> userRepository.findPublicProfilesByUuidIn(chunk));
+                for (UserSearchResult profile : profiles) {
+                    cache.put(profile.uuid(), profile);
+                    json.writeObject(profile);
+                }
+                json.flush();
+            }
+            json.writeEndArray();
+        }
+    }
+
+    public void invalidate(UUID uuid) {
+        cache.invalidate(uuid);
+    }
+
+    // Like ResolvedUserCache.invalidateAfterCommit: a concurrent lookup can't cache the pre-commit card
+    public void invalidateAfterCommit(UUID uuid) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            invalidate(uuid);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                invalidate(uuid);
+            }
+        });
+    }
+}
@@ -0,0 +1,82 @@
+package com.encoria.backend.service;
+
+import com.encoria.backend.model.UserRole;
+import com.encoria.backend.repository.UserRoleRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory, immutable view of the user_roles table.
+ * Roles barely change, so lookups by code and the /public/roles payload are served from a snapshot
+ * that {@link #refresh()} rebuilds and swaps atomically whenever roles are written.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RoleCatalog {
+
+    private final UserRoleRepository userRoleRepository;
+    private final ObjectMapper objectMapper;
+    private final AtomicLong versions = new AtomicLong();
+
+    private volatile Snapshot snapshot;
+
+    /**
+     * Everything derived from one read of user_roles.
+     * {@code json} is the pre-serialized /public/roles body and {@code etag} a strong ETag over it.
+     */
+    public record Snapshot(long version, Map<String, UserRole> byCode, List<UserRole> roles, byte[] json, String etag) {
+    }
+
+    // Call after any change to user_roles (seeding, admin edits...)
+    public synchronized Snapshot refresh() {
+        List<UserRole> roles = userRoleRepository.findAll().stream()
+                .sorted(Comparator.comparing(UserRole::getId))
+                .toList();
+        byte[] json;
+        try {
+            json = objectMapper.writeValueAsBytes(roles);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Couldn't serialize roles", e);
+        }
+        Map<String, UserRole> byCode = roles.stream()
+                .collect(Collectors.toUnmodifiableMap(UserRole::getCode, Function.identity()));
+        Snapshot next = new Snapshot(versions.incrementAndGet(), byCode, roles, json, etagOf(json));
+        snapshot = next;
+        log.info("Role catalog v{} loaded with {} roles", next.version(), roles.size());
+        return next;
+    }
+
+    public Snapshot current() {
+        Snapshot current = snapshot;
+        return current != null ? current : refresh();
+    }
+
+    public Optional<UserRole> findByCode(String code) {
+        return Optional.ofNullable(current().byCode().get(code));
+    }
+
+    // Content-based, so every node serving the same roles hands out the same ETag
+    private static String etagOf(byte[] json) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(json);
+            return "\"" + HexFormat.of().formatHex(hash, 0, 16) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,313 @@
+package com.encoria.backend.service;
+
+import com.encoria.backend.model.User;
+import com.encoria.backend.model.UserImportRecord;
+import com.encoria.backend.model.UserIndexEntry;
+import com.encoria.backend.model.UserRole;
+import com.encoria.backend.repository.UserRepository;
+import com.encoria.backend.security.ResolvedUserCache;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityNotFoundException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Bulk import of legacy accounts from NDJSON (one {@link UserImportRecord} per line).
+ * <p>
+ * The body is read line by line and processed in chunks: each chunk is validated, checked against
+ * existing rows with one IN query per unique column, then inserted in a single transaction through
+ * Hibernate JDBC batching (hibernate.jdbc.batch_size matches the users_seq allocationSize of 50).
+ * If a chunk still hits a unique constraint (concurrent writes), it is retried row by row so the
+ * failing records can be reported. Per-record errors are streamed back as NDJSON while the import runs.
+ */
+@Slf4j
+@Service
+public class UserImportService {
+
+    private final UserRepository userRepository;
+    private final RoleCatalog roleCatalog;
+    private final ResolvedUserCache resolvedUserCache;
+    private final UserIndexer userIndexer;
+    private final AvailabilityService availabilityService;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final ObjectReader recordReader;
+    private final int chunkSize;
+
+    public UserImportService(UserRepository userRepository,
+                             RoleCatalog roleCatalog,
+                             ResolvedUserCache resolvedUserCache,
+                             UserIndexer userIndexer,
+                             AvailabilityService availabilityService,
+                             EntityManager entityManager,
+                             TransactionTemplate transactionTemplate,
+                             ObjectMapper objectMapper,
+                             @Value("${encoria.users.import.chunk-size:500}") int chunkSize) {
+        this.userRepository = userRepository;
+        this.roleCatalog = roleCatalog;
+        this.resolvedUserCache = resolvedUserCache;
+        this.userIndexer = userIndexer;
+        this.availabilityService = availabilityService;
+        this.entityManager = entityManager;
+        this.transactionTemplate = transactionTemplate;
+        this.objectMapper = objectMapper;
+        this.recordReader = objectMapper.readerFor(UserImportRecord.class);
+        this.chunkSize = chunkSize;
+    }
+
+    public record ImportSummary(long received, long imported, long failed, long durationMs) {
+    }
+
+    // A parsed line, remembered with its line number for error reporting
+    private record Line(long number, UserImportRecord record) {
+    }
+
+    public ImportSummary importUsers(InputStream ndjson, OutputStream report) throws IOException {
+        long started = System.nanoTime();
+        UserRole defaultRole = roleCatalog.findByCode(DataInitializationService.ROLE_USER)
+                .orElseThrow(() -> new EntityNotFoundException("Default role 'USER' not found in database."));
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(ndjson, StandardCharsets.UTF_8));
+        Writer out = new BufferedWriter(new OutputStreamWriter(report, StandardCharsets.UTF_8));
+        long received = 0;
+        long imported = 0;
+        long failed = 0;
+
+        List<Line> chunk = new ArrayList<>(chunkSize);
+        long lineNumber = 0;
+        String text;
+        while ((text = reader.readLine()) != null) {
+            lineNumber++;
+            if (text.isBlank()) {
+                continue;
+            }
+            received++;
+            try {
+                chunk.add(new Line(lineNumber, recordReader.readValue(text)));
+            } catch (JsonProcessingException e) {
+                failed++;
+                writeError(out, lineNumber, "Malformed record: " + e.getOriginalMessage());
+            }
+            if (chunk.size() == chunkSize) {
+                int inserted = processChunk(chunk, defaultRole, out);
+                imported += inserted;
+                failed += chunk.size() - inserted;
+                chunk.clear();
+                out.flush(); // Let the client see errors as we go
+            }
+        }
+        if (!chunk.isEmpty()) {
+            int inserted = processChunk(chunk, defaultRole, out);
+            imported += inserted;
+            failed += chunk.size() - inserted;
+        }
+
+        ImportSummary summary = new ImportSummary(received, imported, failed, (System.nanoTime() - started) / 1_000_000);
+        Map<String, Object> summaryLine = new LinkedHashMap<>();
+        summaryLine.put("status", "summary");
+        summaryLine.put("received", summary.received());
+        summaryLine.put("imported", summary.imported());
+        summaryLine.put("failed", summary.failed());
+        summaryLine.put("durationMs", summary.durationMs());
+        out.write(objectMapper.writeValueAsString(summaryLine));
+        out.write('\n');
+        out.flush();
+        log.info("User import finished: {}", summary);
+        return summary;
+    }
+
+    // Returns the number of inserted records; errors for the others are written to the report
+    private int processChunk(List<Line> chunk, UserRole defaultRole, Writer out) throws IOException {
+        List<Line> accepted = new ArrayList<>(chunk.size());
+        Set<String> externalAuthIds = new HashSet<>();
+        Set<String> usernames = new HashSet<>();
+        Set<String> emails = new HashSet<>();
+
+        // 1. Field validation + duplicates inside the chunk itself
+        for (Line line : chunk) {
+            UserImportRecord record = line.record();
+            String error = validate(record);
+            if (error == null && !externalAuthIds.add(record.getExternalAuthId())) {
+                error = UserService.externalAuthIdTakenMessage();
+            }
+            if (error == null && !usernames.add(record.getUsername())) {
+                error = UserService.usernameTakenMessage(record);
+            }
+            if (error == null && !emails.add(lowerCase(record.getEmail()))) {
+                error = UserService.emailTakenMessage(record);
+            }
+            if (error != null) {
+                writeError(out, line.number(), error);
+            } else {
+                accepted.add(line);
+            }
+        }
+        if (accepted.isEmpty()) {
+            return 0;
+        }
+
+        // 2. Conflicts with existing rows, one query per unique column. Usernames and emails the availability
+        // index has never seen can't conflict, so only possible matches are queried (usually none for new users;
+        // the lower(email) lookup can't use an index on H2). The constraints still catch anything indexed late.
+        Set<String> takenExternalAuthIds = new HashSet<>(userRepository.findExistingExternalAuthIds(externalAuthIds));
+        Set<String> takenUsernames = findExisting(usernames, availabilityService::mightHaveUsername,
+                userRepository::findExistingUsernames);
+        Set<String> takenEmails = findExisting(emails, availabilityService::mightHaveEmail,
+                userRepository::findExistingEmails);
+        List<Line> insertable = new ArrayList<>(accepted.size());
+        for (Line line : accepted) {
+            UserImportRecord record = line.record();
+            if (takenExternalAuthIds.contains(record.getExternalAuthId())) {
+                writeError(out, line.number(), UserService.externalAuthIdTakenMessage());
+            } else if (takenUsernames.contains(record.getUsername())) {
+                writeError(out, line.number(), UserService.usernameTakenMessage(record));
+            } else if (takenEmails.contains(lowerCase(record.getEmail()))) {
+                writeError(out, line.number(), UserService.emailTakenMessage(record));
+            } else {
+                insertable.add(line);
+            }
+        }
+        if (insertable.isEmpty()) {
+            return 0;
+        }
+
+        // 3. One transaction, JDBC-batched inserts
+        List<User> users = new ArrayList<>(insertable.size());
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                for (Line line : insertable) {
+                    User user = toUser(line.record(), defaultRole);
+                    entityManager.persist(user);
+                    users.add(user);
+                }
+                entityManager.flush();
+                // Don't let the (possibly request-scoped) persistence context grow with the import
+                entityManager.clear();
+            });
+            users.forEach(this::afterInsert);
+            return users.size();
+        } catch (DataIntegrityViolationException e) {
+            log.debug("Batch insert conflicted, retrying {} records one by one", insertable.size());
+            return insertOneByOne(insertable, defaultRole, out);
+        }
+    }
+
+    private static Set<String> findExisting(Set<String> candidates, Predicate<String> mightExist,
+                                            Function<Collection<String>, List<String>> query) {
+        List<String> possible = candidates.stream().filter(mightExist).toList();
+        return possible.isEmpty() ? Set.of() : new HashSet<>(query.apply(possible));
+    }
+
+    private int insertOneByOne(List<Line> lines, UserRole defaultRole, Writer out) throws IOException {
+        int inserted = 0;
+        for (Line line : lines) {
+            try {
+                User user = toUser(line.record(), defaultRole);
+                transactionTemplate.executeWithoutResult(status -> {
+                    entityManager.persist(user);
+                    entityManager.flush();
+                    entityManager.clear();
+                });
+                afterInsert(user);
+                inserted++;
+            } catch (DataIntegrityViolationException e) {
+                writeError(out, line.number(), conflictMessage(e, line.record()));
+            }
+        }
+        return inserted;
+    }
+
+    // Keep the in-memory views in sync with the committed rows
+    private void afterInsert(User user) {
+        resolvedUserCache.invalidate(user.getExternalAuthId());
+        userIndexer.index(UserIndexEntry.from(user));
+    }
+
+    private static String conflictMessage(DataIntegrityViolationException e, UserImportRecord record) {
+        try {
+            return UserService.conflictMessage(e, record);
+        } catch (DataIntegrityViolationException notAConflict) {
+            return "Rejected by database: " + notAConflict.getMostSpecificCause().getMessage();
+        }
+    }
+
+    // Same required fields as the NOT NULL columns on 'users'; pictures may only point at uploads (see UserService)
+    private static String validate(UserImportRecord record) {
+        if (isBlank(record.getExternalAuthId())) {
+            return "externalAuthId is required.";
+        }
+        if (isBlank(record.getUsername())) {
+            return "username is required.";
+        }
+        if (isBlank(record.getEmail())) {
+            return "email is required.";
+        }
+        if (record.getBirthdate() == null) {
+            return "birthdate is required.";
+        }
+        if (!UserService.isStoredPictureUrlIfPresent(record.getPictureUrl())) {
+            return UserService.pictureUrlInvalidMessage();
+        }
+        return null;
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+
+    // Emails are unique regardless of case (see the uk_users_email index)
+    private static String lowerCase(String email) {
+        return email.toLowerCase(Locale.ROOT);
+    }
+
+    private static User toUser(UserImportRecord record, UserRole role) {
+        return User.builder()
+                .externalAuthId(record.getExternalAuthId())
+                .username(record.getUsername())
+                .email(record.getEmail())
+                .firstName(record.getFirstName())
+                .lastName(record.getLastName())
+                .birthdate(record.getBirthdate())
+                .pictureUrl(record.getPictureUrl())
+                .role(role)
+                .isEnabled(true)
+                .isNonLocked(true)
+                .build();
+    }
+
+    private void writeError(Writer out, long lineNumber, String error) throws IOException {
+        Map<String, Object> line = new LinkedHashMap<>();
+        line.put("line", lineNumber);
+        line.put("status", "error");
+        line.put("error", error);
+        out.write(objectMapper.writeValueAsString(line));
+        out.write('\n');
+    }
+}
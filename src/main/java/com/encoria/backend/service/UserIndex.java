@@ -0,0 +1,16 @@
+package com.encoria.backend.service;
+
+import com.encoria.backend.model.UserIndexEntry;
+
+/**
+ * An in-memory index over users, fed by {@link UserIndexer}: once from a full table scan after startup,
+ * then with every committed write (on this node right away, through other nodes by the periodic catch-up).
+ */
+public interface UserIndex {
+
+    // Add or replace the user's entry (called concurrently with lookups)
+    void index(UserIndexEntry entry);
+
+    // The startup scan has fed every existing user
+    void bootstrapComplete(long userCount);
+}
@@ -0,0 +1,139 @@
+package com.encoria.backend.service;
+
+import com.encoria.backend.model.User;
+import com.encoria.backend.model.UserIndexEntry;
+import com.encoria.backend.repository.UserRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Feeds every {@link UserIndex}: one streaming pass over the users table after startup (off the startup path),
+ * then each committed write from UserService and the bulk import on this node. Writes committed through other
+ * nodes are caught up every {@code catch-up-interval} by re-reading the users whose updated_at is past a watermark
+ * (the start of the previous pass, minus {@code catch-up-overlap}). Re-indexing a user is idempotent, so the overlap
+ * only costs a few repeated entries.
+ */
+@Slf4j
+@Service
+public class UserIndexer {
+
+    private final UserRepository userRepository;
+    private final TransactionTemplate readOnlyTransaction;
+    private final List<UserIndex> indexes;
+    private final Duration catchUpInterval;
+    private final Duration catchUpOverlap;
+    private final ScheduledExecutorService catchUp = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "user-index-catch-up");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Start of the last pass (bootstrap or catch-up) that completed; null until the bootstrap has
+    private volatile Instant watermark;
+
+    public UserIndexer(UserRepository userRepository,
+                       TransactionTemplate transactionTemplate,
+                       List<UserIndex> indexes,
+                       @Value("${encoria.users.index.catch-up-interval:5s}") Duration catchUpInterval,
+                       @Value("${encoria.users.index.catch-up-overlap:30s}") Duration catchUpOverlap) {
+        this.userRepository = userRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        this.readOnlyTransaction.setReadOnly(true);
+        this.indexes = indexes;
+        this.catchUpInterval = catchUpInterval;
+        this.catchUpOverlap = catchUpOverlap;
+    }
+
+    @PreDestroy
+    public void stop() {
+        catchUp.shutdownNow();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void bootstrapInBackground() {
+        Thread builder = new Thread(this::bootstrap, "user-index-bootstrap");
+        builder.setDaemon(true);
+        builder.start();
+    }
+
+    void bootstrap() {
+        long started = System.nanoTime();
+        Instant passStarted = Instant.now();
+        try {
+            long count = readOnlyTransaction.execute(status -> {
+                try (Stream<UserIndexEntry> entries = userRepository.streamIndexEntries()) {
+                    return entries.peek(this::index).count();
+                }
+            });
+            indexes.forEach(index -> index.bootstrapComplete(count));
+            watermark = passStarted;
+            log.info("User indexes built from {} users in {} ms", count, (System.nanoTime() - started) / 1_000_000);
+        } catch (RuntimeException e) {
+            log.error("Couldn't build user indexes, lookups will keep using the database", e);
+            return;
+        }
+        long interval = catchUpInterval.toMillis();
+        catchUp.scheduleWithFixedDelay(this::catchUpQuietly, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    private void catchUpQuietly() {
+        try {
+            catchUp();
+        } catch (RuntimeException e) {
+            log.warn("User index catch-up failed, will retry: {}", e.getMessage());
+        }
+    }
+
+    // Package-private for tests; returns the number of users re-indexed
+    long catchUp() {
+        Instant since = watermark;
+        if (since == null) {
+            return 0;
+        }
+        Instant passStarted = Instant.now();
+        long count = readOnlyTransaction.execute(status -> {
+            try (Stream<UserIndexEntry> entries = userRepository.streamIndexEntriesUpdatedSince(since.minus(catchUpOverlap))) {
+                return entries.peek(this::index).count();
+            }
+        });
+        watermark = passStarted;
+        log.debug("User index catch-up re-indexed {} users written since {}", count, since);
+        return count;
+    }
+
+    public void index(UserIndexEntry entry) {
+        for (UserIndex index : indexes) {
+            index.index(entry);
+        }
+    }
+
+    // Index once the surrounding transaction commits, so indexes never show rolled-back users
+    public void indexAfterCommit(User user) {
+        UserIndexEntry entry = UserIndexEntry.from(user);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            index(entry);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                index(entry);
+            }
+        });
+    }
+}
@@ -0,0 +1,139 @@
+package com.encoria.backend.service;
+
+import com.encoria.backend.model.UserPage;
+import com.encoria.backend.model.UserSummary;
+import com.encoria.backend.repository.UserRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Admin listing (keyset pagination) and full export of users, both on the {@link UserSummary} projection.
+ */
+@Service
+@RequiredArgsConstructor
+public class UserListingService {
+
+    public static final int MAX_PAGE_SIZE = 500;
+
+    private final UserRepository userRepository;
+    private final ObjectMapper objectMapper;
+
+    public enum SortKey { ID, CREATED_AT }
+
+    public enum ExportFormat { NDJSON, CSV }
+
+    /**
+     * @param cursor opaque value from the previous page's {@code nextCursor}, or null for the first page
+     */
+    @Transactional(readOnly = true)
+    public UserPage listUsers(SortKey sort, String cursor, int size) {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("size must be between 1 and " + MAX_PAGE_SIZE + ".");
+        }
+        Cursor after = cursor == null || cursor.isBlank() ? Cursor.FIRST : Cursor.decode(cursor);
+        List<UserSummary> users = switch (sort) {
+            case ID -> userRepository.findSummariesAfterId(after.id(), Limit.of(size));
+            case CREATED_AT -> userRepository.findSummariesAfterCreatedAt(after.createdAt(), after.id(), Limit.of(size));
+        };
+        String nextCursor = users.size() < size ? null : Cursor.of(users.get(users.size() - 1)).encode();
+        return new UserPage(users, nextCursor);
+    }
+
+    /**
+     * Writes every user to {@code out}, streaming rows from a database cursor so memory stays flat
+     * regardless of table size.
+     */
+    @Transactional(readOnly = true)
+    public void exportUsers(ExportFormat format, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        try (Stream<UserSummary> users = userRepository.streamAllSummaries()) {
+            switch (format) {
+                case NDJSON -> writeNdjson(users, writer);
+                case CSV -> writeCsv(users, writer);
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.flush();
+    }
+
+    private void writeNdjson(Stream<UserSummary> users, Writer writer) throws IOException {
+        SequenceWriter sequence = objectMapper.writer().withRootValueSeparator("\n").writeValues(writer);
+        users.forEach(user -> {
+            try {
+                sequence.write(user);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        sequence.flush();
+        writer.write('\n');
+    }
+
+    private static void writeCsv(Stream<UserSummary> users, Writer writer) throws IOException {
+        writer.write("id,uuid,externalAuthId,username,email,firstName,lastName,roleCode,enabled,nonLocked,createdAt\n");
+        users.forEach(user -> {
+            try {
+                writer.write(user.id() + "," + user.uuid() + "," + csv(user.externalAuthId()) + ","
+                        + csv(user.username()) + "," + csv(user.email()) + "," + csv(user.firstName()) + ","
+                        + csv(user.lastName()) + "," + csv(user.roleCode()) + "," + user.enabled() + ","
+                        + user.nonLocked() + "," + user.createdAt() + "\n");
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    // RFC 4180 quoting, only when needed
+    private static String csv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    // Position after the last row of a page: (createdAt, id), base64url encoded for clients
+    private record Cursor(Instant createdAt, long id) {
+
+        static final Cursor FIRST = new Cursor(Instant.EPOCH, 0L);
+
+        static Cursor of(UserSummary user) {
+            return new Cursor(user.createdAt(), user.id());
+        }
+
+        String encode() {
+            String raw = createdAt + "|" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static Cursor decode(String cursor) {
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int separator = raw.lastIndexOf('|');
+                return new Cursor(Instant.parse(raw.substring(0, separator)), Long.parseLong(raw.substring(separator + 1)));
+            } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException e) {
+                throw new IllegalArgumentException("Invalid cursor.");
+            }
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.encoria.backend.service;
+
+import com.encoria.backend.model.UserIndexEntry;
+import com.encoria.backend.model.UserSearchResult;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory prefix index for people search (typeahead) by username, first name, last name and full name.
+ * <p>
+ * Keys are normalized (lower-cased, accents stripped) and kept in a sorted, lock-free map as
+ * {@code key + '\0' + userId}, so a prefix lookup is one seek plus a short in-order scan and never touches
+ * Postgres. Fed by {@link UserIndexer}; re-indexing a user replaces its previous keys, atomically per user
+ * (concurrent re-indexes of one user can't leave stale keys behind), and never with an older version.
+ */
+@Slf4j
+@Service
+public class UserSearchIndex implements UserIndex {
+
+    public static final int MAX_RESULTS = 50;
+
+    private static final char SEPARATOR = '\0';
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+
+    private final ConcurrentSkipListMap<String, Long> keys = new ConcurrentSkipListMap<>();
+    private final Map<Long, UserIndexEntry> users = new ConcurrentHashMap<>();
+
+    private volatile boolean ready;
+
+    @Override
+    public void index(UserIndexEntry entry) {
+        // The key swap runs inside compute(), which serializes updates of the same id
+        users.compute(entry.id(), (id, previous) -> {
+            if (previous != null && isOlder(entry, previous)) {
+                // e.g. a catch-up pass that read the row before this node's own write was indexed
+                return previous;
+            }
+            if (previous != null) {
+                keysOf(previous).forEach(key -> keys.remove(key + SEPARATOR + id));
+            }
+            keysOf(entry).forEach(key -> keys.put(key + SEPARATOR + id, id));
+            return entry;
+        });
+    }
+
+    private static boolean isOlder(UserIndexEntry entry, UserIndexEntry previous) {
+        return entry.version() != null && previous.version() != null && entry.version() < previous.version();
+    }
+
+    @Override
+    public void bootstrapComplete(long userCount) {
+        ready = true;
+        log.info("Search index ready with {} users ({} keys)", userCount, keys.size());
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    // Package-private for tests
+    int keyCount() {
+        return keys.size();
+    }
+
+    /**
+     * Up to {@code limit} distinct users having a name key that starts with {@code query}, in key order.
+     */
+    public List<UserSearchResult> search(String query, int limit) {
+        String prefix = normalize(query);
+        if (prefix.isEmpty()) {
+            return List.of();
+        }
+        int max = Math.min(Math.max(limit, 1), MAX_RESULTS);
+        // Every key starting with prefix sorts in [prefix, prefix + U+FFFF)
+        ConcurrentNavigableMap<String, Long> matches = keys.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+        Set<Long> ids = new LinkedHashSet<>();
+        for (Long id : matches.values()) {
+            if (ids.add(id) && ids.size() == max) {
+                break;
+            }
+        }
+        List<UserSearchResult> results = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            UserIndexEntry entry = users.get(id);
+            if (entry != null) {
+                results.add(UserSearchResult.from(entry));
+            }
+        }
+        return results;
+    }
+
+    private static Set<String> keysOf(UserIndexEntry entry) {
+        Set<String> result = new LinkedHashSet<>(4);
+        addKey(result, entry.username());
+        addKey(result, entry.firstName());
+        addKey(result, entry.lastName());
+        if (entry.firstName() != null && entry.lastName() != null) {
+            addKey(result, entry.firstName() + " " + entry.lastName());
+        }
+        return result;
+    }
+
+    private static void addKey(Set<String> result, String value) {
+        if (value != null) {
+            String key = normalize(value);
+            if (!key.isEmpty()) {
+                result.add(key);
+            }
+        }
+    }
+
+    // "  José " -> "jose"; separators are stripped so they can't break the key encoding
+    static String normalize(String value) {
+        String decomposed = Normalizer.normalize(value.trim(), Normalizer.Form.NFD);
+        return DIACRITICS.matcher(decomposed).replaceAll("")
+                .replace(String.valueOf(SEPARATOR), "")
+                .toLowerCase(Locale.ROOT);
+    }
+}
@@ -1,50 +1,99 @@
 package com.encoria.backend.service;
 
+import com.encoria.backend.config.ReadYourWrites;
 import com.encoria.backend.model.User;
+import com.encoria.backend.model.UserAccessDto;
 import com.encoria.backend.model.UserProfileDto;
+import com.encoria.backend.model.UserProfileView;
+import com.encoria.backend.model.UserSearchResult;
 import com.encoria.backend.model.UserRole; // Import UserRole
 import com.encoria.backend.repository.UserRepository;
-import com.encoria.backend.repository.UserRoleRepository; // Import UserRoleRepository
+import com.encoria.backend.security.ResolvedUserCache;
+import com.encoria.backend.security.RevocationSet;
 import jakarta.persistence.EntityNotFoundException; // Import exception
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional; // Import Transactional
 
+import java.time.Instant;
+import java.util.List;
+import java.util.Locale;
 import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Consumer;
 
 @Service
 @RequiredArgsConstructor // Lombok handles constructor injection
 public class UserService {
 
     private final UserRepository userRepository;
-    private final UserRoleRepository userRoleRepository; // Inject UserRoleRepository
+    private final RoleCatalog roleCatalog; // Roles are served from memory
+    private final ResolvedUserCache resolvedUserCache;
+    private final UserIndexer userIndexer;
+    private final UserSearchIndex userSearchIndex;
+    private final ReadYourWrites readYourWrites;
+    private final PublicProfileService publicProfileService;
+    private final RevocationSet revocationSet;
+
+    // true: insert straight away and map unique-constraint violations to 409s (1 round trip)
+    // false: run the existsBy checks first (3 extra round trips, still racy on its own)
+    @Value("${encoria.users.optimistic-signup:true}")
+    private boolean optimisticSignup;
 
     public Optional<User> findByExternalAuthId(String externalAuthId) {
         return userRepository.findByExternalAuthId(externalAuthId);
     }
 
-    @Transactional // Make this method transactional
-    public User createUserProfile(String externalAuthId, @Valid UserProfileDto profileDto) {
+    // Read-only projection of the user's public fields (no entity, no role fetch, no dirty checking)
+    @Transactional(readOnly = true)
+    public Optional<UserProfileView> findProfileView(String externalAuthId) {
+        return userRepository.findProfileViewByExternalAuthId(externalAuthId);
+    }
 
-        // --- Check if user already exists (optional but good practice) ---
-        if (userRepository.existsByExternalAuthId(externalAuthId)) {
-            throw new IllegalStateException("User with this external ID already exists.");
+    // Typeahead people search, served from the in-memory index (falls back to a LIKE query while it is built)
+    @Transactional(readOnly = true)
+    public List<UserSearchResult> searchUsers(String query, int limit) {
+        int max = Math.min(Math.max(limit, 1), UserSearchIndex.MAX_RESULTS);
+        if (userSearchIndex.isReady()) {
+            return userSearchIndex.search(query, max);
         }
-        if (userRepository.existsByUsername(profileDto.getUsername())) {
-            throw new IllegalStateException("Username '" + profileDto.getUsername() + "' is already taken.");
+        String prefix = query.trim().toLowerCase(Locale.ROOT)
+                .replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+        return prefix.isEmpty() ? List.of() : userRepository.searchByPrefix(prefix + "%", Limit.of(max));
+    }
+
+    // Strong ETag for a profile representation, derived from its updatedAt
+    public static String profileEtag(Instant updatedAt) {
+        return "\"" + updatedAt.getEpochSecond() + "." + updatedAt.getNano() + "\"";
+    }
+
+    @Transactional // Make this method transactional
+    public User createUserProfile(String externalAuthId, @Valid UserProfileDto profileDto) {
+        if (!isStoredPictureUrlIfPresent(profileDto.getPictureUrl())) {
+            throw new IllegalArgumentException(pictureUrlInvalidMessage());
         }
-        if (userRepository.existsByEmail(profileDto.getEmail())) {
-            throw new IllegalStateException("Email '" + profileDto.getEmail() + "' is already registered.");
+
+        // --- Check if user already exists (skipped in optimistic mode, the unique constraints decide) ---
+        if (!optimisticSignup) {
+            if (userRepository.existsByExternalAuthId(externalAuthId)) {
+                throw new IllegalStateException(externalAuthIdTakenMessage());
+            }
+            if (userRepository.existsByUsername(profileDto.getUsername())) {
+                throw new IllegalStateException(usernameTakenMessage(profileDto));
+            }
+            if (userRepository.existsByEmail(profileDto.getEmail())) {
+                throw new IllegalStateException(emailTakenMessage(profileDto));
+            }
         }
         // --- End checks ---
 
 
-        // --- Fetch the default role ---
-        UserRole defaultRole = userRoleRepository.findByCode("USER") // Find by code 'USER'
-                .orElseThrow(() -> new EntityNotFoundException("Default role 'USER' not found in database."));
-        // --- End fetch ---
-
         User newUser = User.builder()
                 .externalAuthId(externalAuthId)
                 .username(profileDto.getUsername())
@@ -53,12 +102,188 @@ public class UserService {
                 .lastName(profileDto.getLastName())
                 .birthdate(profileDto.getBirthdate())
                 .pictureUrl(profileDto.getPictureUrl())
-                // --- ASSIGN THE ROLE ---
-                .role(defaultRole)
+                // --- ASSIGN THE ROLE (from memory, no lookup per signup) ---
+                .role(getDefaultRole())
                 // isEnabled, isNonLocked, createdAt, updatedAt are handled by defaults/annotations
                 .build();
 
-        return userRepository.save(newUser);
+        User savedUser;
+        try {
+            // Flush now so a violated unique constraint surfaces here, not at commit
+            savedUser = userRepository.saveAndFlush(newUser);
+        } catch (DataIntegrityViolationException e) {
+            // Also covers concurrent double-submits that slipped past the checks above
+            throw new IllegalStateException(conflictMessage(e, profileDto), e);
+        }
+        // Drop the cached "unregistered" snapshot so the next request sees the new profile
+        resolvedUserCache.invalidateAfterCommit(externalAuthId);
+        // Read this user's next requests from the primary until the replicas have caught up
+        readYourWrites.recordWriteAfterCommit(externalAuthId);
+        // Availability/search indexes pick the new user up once it is committed
+        userIndexer.indexAfterCommit(savedUser);
+        return savedUser;
+    }
+
+    /**
+     * Applies the non-null fields of {@code changes} to the user's profile. The user is loaded once (the If-Match
+     * check, the no-op check and the response all need it); nothing is written when the fields all match the stored
+     * values, otherwise a single UPDATE of just the changed columns guarded by the version column, so an edit that
+     * committed after the load fails the UPDATE instead of being overwritten (no row lock).
+     *
+     * @param expectedEtag the profile ETag the client edited (If-Match), or null to skip that check
+     * @throws EntityNotFoundException if the user has no profile yet
+     * @throws IllegalArgumentException if a supplied username or email is blank, or pictureUrl isn't an upload's URL
+     * @throws IllegalStateException if the new username or email is taken
+     * @throws OptimisticLockingFailureException if the profile changed since {@code expectedEtag} or concurrently
+     */
+    @Transactional
+    public User updateProfile(String externalAuthId, UserProfileDto changes, String expectedEtag) {
+        // Bad input is refused before any lookup
+        if (isBlankIfPresent(changes.getUsername()) || isBlankIfPresent(changes.getEmail())) {
+            throw new IllegalArgumentException("Username and email can't be blank.");
+        }
+        if (!isStoredPictureUrlIfPresent(changes.getPictureUrl())) {
+            throw new IllegalArgumentException(pictureUrlInvalidMessage());
+        }
+        User user = userRepository.findByExternalAuthId(externalAuthId)
+                .orElseThrow(() -> new EntityNotFoundException("User not found, profile setup likely incomplete."));
+        if (expectedEtag != null && !expectedEtag.equals(profileEtag(user.getUpdatedAt()))) {
+            throw new OptimisticLockingFailureException("Profile was modified since it was read.");
+        }
+
+        boolean changed = apply(changes.getUsername(), user.getUsername(), user::setUsername);
+        changed |= apply(changes.getEmail(), user.getEmail(), user::setEmail);
+        changed |= apply(changes.getFirstName(), user.getFirstName(), user::setFirstName);
+        changed |= apply(changes.getLastName(), user.getLastName(), user::setLastName);
+        changed |= apply(changes.getBirthdate(), user.getBirthdate(), user::setBirthdate);
+        changed |= apply(changes.getPictureUrl(), user.getPictureUrl(), user::setPictureUrl);
+        if (!changed) {
+            return user; // Not dirty, so no UPDATE at flush and nothing cached goes stale
+        }
+
+        User savedUser;
+        try {
+            // Flush now so a taken username/email or a concurrent edit surfaces here, not at commit
+            savedUser = userRepository.saveAndFlush(user);
+        } catch (DataIntegrityViolationException e) {
+            throw new IllegalStateException(conflictMessage(e, changes), e);
+        }
+        // Username and role are part of the resolved principal, the rest of the profile card and indexes
+        resolvedUserCache.invalidateAfterCommit(externalAuthId);
+        publicProfileService.invalidateAfterCommit(savedUser.getUuid());
+        userIndexer.indexAfterCommit(savedUser);
+        readYourWrites.recordWriteAfterCommit(externalAuthId);
+        return savedUser;
+    }
+
+    // Sets a supplied (non-null) value that differs from the current one
+    private static <T> boolean apply(T value, T current, Consumer<T> setter) {
+        if (value == null || value.equals(current)) {
+            return false;
+        }
+        setter.accept(value);
+        return true;
+    }
+
+    private static boolean isBlankIfPresent(String value) {
+        return value != null && value.isBlank();
+    }
+
+    // Pictures are set through PUT /profile/picture; a supplied pictureUrl may only point back at an upload,
+    // never at another site (signup, profile edits and the bulk import alike)
+    static boolean isStoredPictureUrlIfPresent(String pictureUrl) {
+        return pictureUrl == null || ProfilePictureService.isStoredPictureUrl(pictureUrl);
+    }
+
+    /**
+     * Disables/enables or locks/unlocks a user (admin). Every node refuses or readmits them within
+     * the RevocationSet's propagation time, without waiting for their token to expire.
+     *
+     * @throws EntityNotFoundException if there is no user with this uuid
+     */
+    @Transactional
+    public User updateAccess(UUID uuid, UserAccessDto access) {
+        User user = userRepository.findByUuid(uuid)
+                .orElseThrow(() -> new EntityNotFoundException("User not found."));
+        if (access.getEnabled() != null) {
+            user.setEnabled(access.getEnabled());
+        }
+        if (access.getNonLocked() != null) {
+            user.setNonLocked(access.getNonLocked());
+        }
+        User savedUser = userRepository.saveAndFlush(user);
+        revocationSet.publishAfterCommit(savedUser.getId(), !savedUser.isEnabled() || !savedUser.isNonLocked());
+        // The cached principal carries the flags too
+        resolvedUserCache.invalidateAfterCommit(savedUser.getExternalAuthId());
+        return savedUser;
+    }
+
+    /**
+     * Points the user's picture at a stored upload (see ProfilePictureService).
+     *
+     * @throws EntityNotFoundException if the user has no profile yet
+     */
+    @Transactional
+    public User updatePictureUrl(String externalAuthId, String pictureUrl) {
+        User user = userRepository.findByExternalAuthId(externalAuthId)
+                .orElseThrow(() -> new EntityNotFoundException("User not found, profile setup likely incomplete."));
+        user.setPictureUrl(pictureUrl);
+        User savedUser = userRepository.saveAndFlush(user); // Bumps updatedAt, so /me ETags change
+        // Profile cards and search results carry the picture
+        publicProfileService.invalidateAfterCommit(savedUser.getUuid());
+        userIndexer.indexAfterCommit(savedUser);
+        readYourWrites.recordWriteAfterCommit(externalAuthId);
+        return savedUser;
+    }
+
+    // Default role comes from the in-memory RoleCatalog, no lookup per signup
+    private UserRole getDefaultRole() {
+        return roleCatalog.findByCode(DataInitializationService.ROLE_USER) // Find by code 'USER'
+                .orElseThrow(() -> new EntityNotFoundException("Default role 'USER' not found in database."));
+    }
+
+    // Map the violated unique constraint on 'users' to the same message the pre-checks produce
+    // (shared with UserImportService)
+    static String conflictMessage(DataIntegrityViolationException e, UserProfileDto profileDto) {
+        String violation = violatedConstraint(e);
+        if (violation.contains(User.UK_EXTERNAL_AUTH_ID) || violation.contains("external_auth_id")) {
+            return externalAuthIdTakenMessage();
+        }
+        if (violation.contains(User.UK_USERNAME) || violation.contains("username")) {
+            return usernameTakenMessage(profileDto);
+        }
+        if (violation.contains(User.UK_EMAIL) || violation.contains("email")) {
+            return emailTakenMessage(profileDto);
+        }
+        if (violation.contains(User.UK_UUID) || violation.contains("uuid")) {
+            return "User identifier collision, please retry.";
+        }
+        throw e; // Not a uniqueness conflict (e.g. NOT NULL), let it surface as a server error
+    }
+
+    private static String violatedConstraint(DataIntegrityViolationException e) {
+        // Prefer the constraint name Hibernate extracted, fall back to the driver message (mentions the columns)
+        if (e.getCause() instanceof ConstraintViolationException cve && cve.getConstraintName() != null) {
+            return cve.getConstraintName().toLowerCase(Locale.ROOT);
+        }
+        String message = e.getMostSpecificCause().getMessage();
+        return message != null ? message.toLowerCase(Locale.ROOT) : "";
+    }
+
+    static String externalAuthIdTakenMessage() {
+        return "User with this external ID already exists.";
+    }
+
+    static String usernameTakenMessage(UserProfileDto profileDto) {
+        return "Username '" + profileDto.getUsername() + "' is already taken.";
+    }
+
+    static String pictureUrlInvalidMessage() {
+        return "pictureUrl must be a URL returned by the picture upload.";
+    }
+
+    static String emailTakenMessage(UserProfileDto profileDto) {
+        return "Email '" + profileDto.getEmail() + "' is already registered.";
     }
 
     // Add existsBy methods to UserRepository if they don't exist
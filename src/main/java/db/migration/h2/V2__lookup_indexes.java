@@ -0,0 +1,76 @@
+package db.migration.h2;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * H2 counterpart of postgresql/V2 for tests and local runs. Java rather than SQL because H2 has no procedural
+ * blocks, and databases adopted by baseline-on-migrate carry the unique constraint names ddl-auto: update left
+ * (CONSTRAINT_xx, or UK... from older Hibernate versions), which have to be looked up before they can be renamed.
+ * <p>
+ * H2 has no expression indexes, so case-insensitive email uniqueness goes through a generated column.
+ * No covering indexes either.
+ */
+public class V2__lookup_indexes extends BaseJavaMigration {
+
+    private static final List<String> UNIQUE_COLUMNS = List.of("uuid", "external_auth_id", "username", "email");
+
+    @Override
+    public void migrate(Context context) throws SQLException {
+        try (Statement statement = context.getConnection().createStatement()) {
+            renameUniqueConstraints(statement);
+
+            statement.execute("alter table users drop constraint uk_users_email");
+            statement.execute("alter table users add column email_lower varchar(255) generated always as (lower(email))");
+            statement.execute("create unique index uk_users_email on users (email_lower)");
+        }
+    }
+
+    // Same as the do block in postgresql/V2: single-column uniques get V1's names, duplicates on a column are dropped
+    private static void renameUniqueConstraints(Statement statement) throws SQLException {
+        List<String[]> uniques = new ArrayList<>();
+        try (ResultSet rs = statement.executeQuery("""
+                select tc.constraint_name, min(kcu.column_name)
+                from information_schema.table_constraints tc
+                         join information_schema.key_column_usage kcu
+                              on kcu.constraint_schema = tc.constraint_schema and kcu.constraint_name = tc.constraint_name
+                where tc.table_schema = current_schema
+                  and upper(tc.table_name) = 'USERS'
+                  and tc.constraint_type = 'UNIQUE'
+                group by tc.constraint_name
+                having count(*) = 1
+                order by tc.constraint_name""")) {
+            while (rs.next()) {
+                uniques.add(new String[]{rs.getString(1), rs.getString(2).toLowerCase(Locale.ROOT)});
+            }
+        }
+
+        Set<String> named = new HashSet<>();
+        for (String[] unique : uniques) {
+            if (unique[0].equalsIgnoreCase("uk_users_" + unique[1])) {
+                named.add(unique[1]);
+            }
+        }
+        for (String[] unique : uniques) {
+            String constraint = unique[0];
+            String column = unique[1];
+            if (!UNIQUE_COLUMNS.contains(column) || constraint.equalsIgnoreCase("uk_users_" + column)) {
+                continue;
+            }
+            if (named.add(column)) {
+                statement.execute("alter table users rename constraint \"" + constraint + "\" to uk_users_" + column);
+            } else {
+                statement.execute("alter table users drop constraint \"" + constraint + "\"");
+            }
+        }
+    }
+}
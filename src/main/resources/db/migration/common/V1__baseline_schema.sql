@@ -0,0 +1,35 @@
+-- Schema as Hibernate generated it with ddl-auto: update. Existing databases are baselined at
+-- this version (spring.flyway.baseline-on-migrate) and only get the migrations after it.
+
+create sequence user_roles_seq start with 1 increment by 50;
+create sequence users_seq start with 1 increment by 50;
+
+create table user_roles (
+    id   integer      not null,
+    code varchar(255) not null,
+    primary key (id),
+    constraint uk_user_roles_code unique (code)
+);
+
+create table users (
+    id               bigint                      not null,
+    uuid             uuid                        not null,
+    external_auth_id varchar(255)                not null,
+    username         varchar(255)                not null,
+    email            varchar(255)                not null,
+    first_name       varchar(255),
+    last_name        varchar(255),
+    birthdate        date                        not null,
+    picture_url      varchar(255),
+    role_id          integer                     not null,
+    is_enabled       boolean                     not null,
+    is_non_locked    boolean                     not null,
+    created_at       timestamp(6) with time zone not null,
+    updated_at       timestamp(6) with time zone not null,
+    primary key (id),
+    constraint uk_users_uuid unique (uuid),
+    constraint uk_users_external_auth_id unique (external_auth_id),
+    constraint uk_users_username unique (username),
+    constraint uk_users_email unique (email),
+    constraint fk_users_role foreign key (role_id) references user_roles (id)
+);
@@ -0,0 +1,9 @@
+-- Default roles (see DataInitializationService). Skips codes that a baselined database already has.
+
+insert into user_roles (id, code)
+select nextval('user_roles_seq'), 'USER'
+where not exists (select 1 from user_roles where code = 'USER');
+
+insert into user_roles (id, code)
+select nextval('user_roles_seq'), 'ADMIN'
+where not exists (select 1 from user_roles where code = 'ADMIN');
@@ -0,0 +1,2 @@
+-- Last authenticated activity, written in batches by LastSeenTracker (null until the first flush)
+alter table users add column last_seen_at timestamp(6) with time zone;
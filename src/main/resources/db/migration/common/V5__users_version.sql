@@ -0,0 +1,2 @@
+-- Optimistic lock column (User.version): concurrent profile edits fail with 409 instead of overwriting each other
+alter table users add column version bigint default 0 not null;
@@ -0,0 +1,4 @@
+-- Signups were created with is_enabled/is_non_locked = false (User's builder ignored the field defaults)
+-- while nothing ever read or changed the flags. Now that disabled/locked accounts are rejected,
+-- reset every account to active; from here on the flags are only changed through PUT /api/users/{uuid}/access.
+update users set is_enabled = true, is_non_locked = true where not is_enabled or not is_non_locked;
@@ -0,0 +1,2 @@
+-- UserIndexer's catch-up polls for users written since its last pass (including through other nodes)
+create index ix_users_updated_at on users (updated_at);
@@ -0,0 +1,3 @@
+-- Admin listing sorted by createdAt (UserRepository.findSummariesAfterCreatedAt): keyset pages seek into this
+-- index in (created_at, id) cursor order and read just one page, instead of sorting the whole table per page
+create index ix_users_created_at on users (created_at, id);
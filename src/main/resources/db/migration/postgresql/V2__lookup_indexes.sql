@@ -0,0 +1,38 @@
+-- Databases adopted by baseline-on-migrate got their unique constraints from ddl-auto: update, which left the
+-- naming to Postgres (users_email_key) or, in older Hibernate versions, to Hibernate (UK...). Give the ones on a
+-- single users column the names V1 uses, so the statements below find them; duplicates on a column are dropped.
+do $$
+declare
+    c record;
+begin
+    for c in
+        select con.conname, att.attname
+        from pg_constraint con
+                 join pg_attribute att on att.attrelid = con.conrelid and att.attnum = con.conkey[1]
+        where con.conrelid = 'users'::regclass
+          and con.contype = 'u'
+          and cardinality(con.conkey) = 1
+          and att.attname in ('uuid', 'external_auth_id', 'username', 'email')
+          and con.conname <> 'uk_users_' || att.attname
+    loop
+        if exists (select 1 from pg_constraint where conrelid = 'users'::regclass and conname = 'uk_users_' || c.attname) then
+            execute format('alter table users drop constraint %I', c.conname);
+        else
+            execute format('alter table users rename constraint %I to %I', c.conname, 'uk_users_' || c.attname);
+        end if;
+    end loop;
+end
+$$;
+
+-- Emails are unique regardless of case, like the equalsIgnoreCase check in UserController.
+-- The index keeps the uk_users_email name so UserService still maps violations to "already registered".
+-- Fails if existing rows differ only by case; merge those accounts first.
+alter table users drop constraint uk_users_email;
+create unique index uk_users_email on users (lower(email));
+
+-- findAuthViewByExternalAuthId, the security lookup behind every ResolvedUserCache miss, reads only these
+-- columns: with them in the unique index, Postgres serves it with an index-only scan on users
+-- (plus the user_roles primary key), as long as autovacuum keeps the visibility map current.
+alter table users drop constraint uk_users_external_auth_id;
+alter table users add constraint uk_users_external_auth_id unique (external_auth_id)
+    include (id, uuid, username, role_id, is_enabled, is_non_locked);
@@ -0,0 +1,4 @@
+-- RevocationSet loads the ids of disabled/locked users at startup and on every resync.
+-- They are a tiny fraction of users, so a partial index keeps that an index-only scan of a few pages
+-- (H2 has no partial indexes and scans the table instead).
+create index ix_users_revoked on users (id) where not is_enabled or not is_non_locked;
@@ -0,0 +1,47 @@
+package com.encoria.backend.config;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLTransientConnectionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BoundedWaitDataSourceTests {
+
+	private static BoundedWaitDataSource dataSource(int maxInFlight) {
+		JdbcDataSource h2 = new JdbcDataSource();
+		h2.setURL("jdbc:h2:mem:bounded-wait;DB_CLOSE_DELAY=-1");
+		return new BoundedWaitDataSource(h2, maxInFlight);
+	}
+
+	@Test
+	void failsFastOnceTheLimitIsReached() throws Exception {
+		BoundedWaitDataSource dataSource = dataSource(2);
+		try (Connection first = dataSource.getConnection(); Connection second = dataSource.getConnection()) {
+			assertThat(dataSource.inFlight()).isEqualTo(2);
+			assertThatThrownBy(dataSource::getConnection)
+					.isInstanceOf(SQLTransientConnectionException.class)
+					.hasMessageContaining("limit 2");
+		}
+		assertThat(dataSource.inFlight()).isZero();
+	}
+
+	@Test
+	void closingTwiceReleasesOnePermit() throws Exception {
+		BoundedWaitDataSource dataSource = dataSource(2);
+		Connection held = dataSource.getConnection();
+		Connection closedTwice = dataSource.getConnection();
+		closedTwice.close();
+		closedTwice.close();
+
+		assertThat(dataSource.inFlight()).isEqualTo(1);
+		try (Connection again = dataSource.getConnection()) {
+			assertThat(again.isValid(1)).isTrue();
+			assertThatThrownBy(dataSource::getConnection).isInstanceOf(SQLTransientConnectionException.class);
+		}
+		held.close();
+	}
+}
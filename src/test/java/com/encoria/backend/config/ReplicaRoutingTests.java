@@ -0,0 +1,129 @@
+package com.encoria.backend.config;
+
+import jakarta.servlet.http.Cookie;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Two local databases, each answering "which database am I?"
+class ReplicaRoutingTests {
+
+	private static DataSource primary;
+	private static DataSource replica;
+	private static JdbcTemplate jdbc;
+	private static TransactionTemplate readWrite;
+	private static TransactionTemplate readOnly;
+
+	private static DataSource database(String name) {
+		JdbcDataSource h2 = new JdbcDataSource();
+		h2.setURL("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+		new JdbcTemplate(h2).execute("create table if not exists node (name varchar(16))");
+		new JdbcTemplate(h2).execute("merge into node key (name) values ('" + name + "')");
+		return h2;
+	}
+
+	@BeforeAll
+	static void setUp() {
+		primary = database("primary");
+		replica = database("replica");
+		DataSource routing = DataSourceConfig.readWriteRouting(primary, new ReplicaDataSource(List.of(replica), primary));
+		jdbc = new JdbcTemplate(routing);
+		readWrite = new TransactionTemplate(new DataSourceTransactionManager(routing));
+		readOnly = new TransactionTemplate(new DataSourceTransactionManager(routing));
+		readOnly.setReadOnly(true);
+	}
+
+	private static String node() {
+		return jdbc.queryForObject("select name from node", String.class);
+	}
+
+	private static String readOnlyNode() {
+		return readOnly.execute(status -> node());
+	}
+
+	private static String readWriteNode() {
+		return readWrite.execute(status -> node());
+	}
+
+	@Test
+	void readOnlyTransactionsGoToTheReplica() {
+		assertThat(readOnlyNode()).isEqualTo("replica");
+		assertThat(readWriteNode()).isEqualTo("primary");
+	}
+
+	@Test
+	void recentWritersReadFromThePrimary() {
+		ReadYourWrites readYourWrites = new ReadYourWrites(Duration.ofMinutes(1), "");
+		readYourWrites.recordWriteAfterCommit("auth0|writer");
+
+		assertThat(readYourWrites.read("auth0|writer", ReplicaRoutingTests::readOnlyNode)).isEqualTo("primary");
+		assertThat(readYourWrites.read("auth0|reader", ReplicaRoutingTests::readOnlyNode)).isEqualTo("replica");
+		// The pin doesn't leak past the read
+		assertThat(readOnlyNode()).isEqualTo("replica");
+	}
+
+	@Test
+	void writesThroughAnotherNodeAreHonouredThroughTheSignedCookie() {
+		ReadYourWrites writingNode = new ReadYourWrites(Duration.ofMinutes(1), "shared-secret");
+		ReadYourWrites readingNode = new ReadYourWrites(Duration.ofMinutes(1), "shared-secret");
+		ReadYourWrites foreignNode = new ReadYourWrites(Duration.ofMinutes(1), "other-secret");
+
+		MockHttpServletResponse writeResponse = new MockHttpServletResponse();
+		RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest(), writeResponse));
+		try {
+			writingNode.recordWriteAfterCommit("auth0|writer");
+		} finally {
+			RequestContextHolder.resetRequestAttributes();
+		}
+		Cookie cookie = writeResponse.getCookie(ReadYourWrites.COOKIE_NAME);
+		assertThat(cookie).isNotNull();
+		assertThat(cookie.isHttpOnly()).isTrue();
+
+		MockHttpServletRequest nextRequest = new MockHttpServletRequest();
+		nextRequest.setCookies(cookie);
+		RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(nextRequest));
+		try {
+			assertThat(readingNode.read("auth0|writer", ReplicaRoutingTests::readOnlyNode)).isEqualTo("primary");
+			// Bound to the subject it was issued for, and to the shared secret
+			assertThat(readingNode.isRecentWriter("auth0|someone-else")).isFalse();
+			assertThat(foreignNode.isRecentWriter("auth0|writer")).isFalse();
+		} finally {
+			RequestContextHolder.resetRequestAttributes();
+		}
+		assertThat(readingNode.isRecentWriter("auth0|writer")).isFalse();
+	}
+
+	@Test
+	void replicaWithoutRoomToWaitIsSkipped() throws Exception {
+		// As set up for each replica pool on virtual threads
+		BoundedWaitDataSource bounded = new BoundedWaitDataSource(replica, 1);
+		DataSource routing = DataSourceConfig.readWriteRouting(primary, new ReplicaDataSource(List.of(bounded), primary));
+
+		try (Connection held = bounded.getConnection()) {
+			assertThat(readOnlyNodeThrough(routing)).isEqualTo("primary");
+			assertThat(bounded.rejected()).isEqualTo(1);
+		}
+		assertThat(readOnlyNodeThrough(routing)).isEqualTo("replica");
+	}
+
+	private static String readOnlyNodeThrough(DataSource routing) {
+		TransactionTemplate transaction = new TransactionTemplate(new DataSourceTransactionManager(routing));
+		transaction.setReadOnly(true);
+		JdbcTemplate routed = new JdbcTemplate(routing);
+		return transaction.execute(status -> routed.queryForObject("select name from node", String.class));
+	}
+}
@@ -0,0 +1,108 @@
+package com.encoria.backend.config;
+
+import org.flywaydb.core.Flyway;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Databases created by ddl-auto: update before Flyway took over are adopted through baseline-on-migrate
+ * and only get V2 and later, so those migrations must cope with the constraint names that schema has.
+ */
+class SchemaMigrationTests {
+
+	// What ddl-auto: update generated from the entities before the migrations (Hibernate 6.6, H2 dialect):
+	// unnamed unique constraints, which H2 names CONSTRAINT_xx
+	private static final String DDL_AUTO_SCHEMA = """
+			create sequence user_roles_seq start with 1 increment by 50;
+			create sequence users_seq start with 1 increment by 50;
+			create table user_roles (id integer not null, code varchar(255) not null unique, primary key (id));
+			create table users (birthdate date not null, is_enabled boolean not null, is_non_locked boolean not null, role_id integer not null, created_at timestamp(6) with time zone not null, id bigint not null, updated_at timestamp(6) with time zone not null, uuid uuid not null unique, email varchar(255) not null, external_auth_id varchar(255) not null, first_name varchar(255), last_name varchar(255), picture_url varchar(255), username varchar(255) not null, primary key (id), unique (external_auth_id), unique (username), unique (email));
+			alter table if exists users add constraint FKh555fyoyldpyaltlb7jva35j2 foreign key (role_id) references user_roles;
+			""";
+
+	// Same schema as older Hibernate versions named it (UK + hash), with uuid unique twice over
+	private static final String DDL_AUTO_SCHEMA_HASH_NAMES = """
+			create sequence user_roles_seq start with 1 increment by 50;
+			create sequence users_seq start with 1 increment by 50;
+			create table user_roles (id integer not null, code varchar(255) not null, primary key (id));
+			create table users (birthdate date not null, is_enabled boolean not null, is_non_locked boolean not null, role_id integer not null, created_at timestamp(6) with time zone not null, id bigint not null, updated_at timestamp(6) with time zone not null, uuid uuid not null, email varchar(255) not null, external_auth_id varchar(255) not null, first_name varchar(255), last_name varchar(255), picture_url varchar(255), username varchar(255) not null, primary key (id));
+			alter table if exists user_roles add constraint UK_user_roles_code unique (code);
+			alter table if exists users add constraint UK_6km2m9i3vjuy36rnvkgj1l61s unique (uuid);
+			alter table if exists users add constraint UKbxmjq0bm5rdwbvk3jsc0bs6hd unique (uuid);
+			alter table if exists users add constraint UKg9ee8x9cf4ffhtfeb1ib79ls0 unique (external_auth_id);
+			alter table if exists users add constraint UKr43af9ap4edm43mmtq01oddj6 unique (username);
+			alter table if exists users add constraint UK6dotkott2kjsp8vw4d0m25fb7 unique (email);
+			alter table if exists users add constraint FKh555fyoyldpyaltlb7jva35j2 foreign key (role_id) references user_roles;
+			""";
+
+	@Test
+	void ddlAutoSchemaIsAdoptedAndMigrated() throws SQLException {
+		assertMigratesToNamedConstraints(DDL_AUTO_SCHEMA);
+	}
+
+	@Test
+	void hashNamedConstraintsAreRenamedAndDuplicatesDropped() throws SQLException {
+		assertMigratesToNamedConstraints(DDL_AUTO_SCHEMA_HASH_NAMES);
+	}
+
+	private void assertMigratesToNamedConstraints(String schema) throws SQLException {
+		JdbcDataSource dataSource = new JdbcDataSource();
+		dataSource.setURL("jdbc:h2:mem:ddl-auto-" + UUID.randomUUID() + ";MODE=PostgreSQL;DB_CLOSE_DELAY=-1");
+		try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+			statement.execute(schema);
+		}
+
+		// As configured in application.yml
+		Flyway flyway = Flyway.configure()
+				.dataSource(dataSource)
+				.locations("classpath:db/migration/common", "classpath:db/migration/h2")
+				.baselineOnMigrate(true)
+				.baselineVersion("1")
+				.load();
+		flyway.migrate();
+		assertThat(flyway.info().pending()).isEmpty();
+
+		try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+			assertThat(uniqueConstraints(statement))
+					.containsExactlyInAnyOrder("UK_USERS_UUID", "UK_USERS_EXTERNAL_AUTH_ID", "UK_USERS_USERNAME");
+
+			insertUser(statement, "auth0|first", "first", "same@example.com");
+			// Case-insensitive now, and reported under the name UserService maps to "already registered"
+			assertThatThrownBy(() -> insertUser(statement, "auth0|second", "second", "Same@Example.com"))
+					.isInstanceOf(SQLException.class)
+					.hasMessageContaining("UK_USERS_EMAIL");
+			assertThatThrownBy(() -> insertUser(statement, "auth0|third", "first", "third@example.com"))
+					.isInstanceOf(SQLException.class)
+					.hasMessageContaining("UK_USERS_USERNAME");
+		}
+	}
+
+	private static List<String> uniqueConstraints(Statement statement) throws SQLException {
+		List<String> names = new ArrayList<>();
+		try (ResultSet rs = statement.executeQuery("select constraint_name from information_schema.table_constraints "
+				+ "where table_name = 'USERS' and constraint_type = 'UNIQUE'")) {
+			while (rs.next()) {
+				names.add(rs.getString(1));
+			}
+		}
+		return names;
+	}
+
+	private static void insertUser(Statement statement, String sub, String username, String email) throws SQLException {
+		statement.execute("insert into users (id, uuid, external_auth_id, username, email, birthdate, role_id, "
+				+ "is_enabled, is_non_locked, created_at, updated_at) values (nextval('users_seq'), random_uuid(), '"
+				+ sub + "', '" + username + "', '" + email + "', date '1990-01-01', "
+				+ "(select id from user_roles where code = 'USER'), true, true, current_timestamp, current_timestamp)");
+	}
+}
@@ -0,0 +1,61 @@
+package com.encoria.backend.controller;
+
+import com.encoria.backend.model.UserProfileDto;
+import com.encoria.backend.service.UserService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDate;
+
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class PublicControllerTests {
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private UserService userService;
+
+	@Test
+	void rolesAreServedAsJsonWithEtag() throws Exception {
+		String etag = mockMvc.perform(get("/public/roles"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$[*].code").value(containsInAnyOrder("USER", "ADMIN")))
+				.andExpect(header().exists(HttpHeaders.ETAG))
+				.andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+		mockMvc.perform(get("/public/roles").header(HttpHeaders.IF_NONE_MATCH, etag))
+				.andExpect(status().isNotModified())
+				.andExpect(content().string(""));
+	}
+
+	@Test
+	void availabilityReflectsExistingAndNewUsers() throws Exception {
+		if (userService.findByExternalAuthId("auth0|availability").isEmpty()) {
+			userService.createUserProfile("auth0|availability",
+					new UserProfileDto("avail-taken", "avail-taken@example.com", null, null, LocalDate.of(1990, 1, 1), null));
+		}
+
+		mockMvc.perform(get("/public/availability").param("username", "avail-taken").param("email", "free@example.com"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.username").value(false))
+				.andExpect(jsonPath("$.email").value(true));
+		mockMvc.perform(get("/public/availability"))
+				.andExpect(status().isBadRequest());
+	}
+
+}
@@ -0,0 +1,361 @@
+package com.encoria.backend.controller;
+
+import com.encoria.backend.config.ReadYourWrites;
+import com.encoria.backend.model.User;
+import com.encoria.backend.model.UserProfileDto;
+import com.encoria.backend.model.UserSearchResult;
+import com.encoria.backend.repository.UserRepository;
+import com.encoria.backend.security.ResolvedUser;
+import com.encoria.backend.security.ResolvedUserAuthenticationToken;
+import com.encoria.backend.service.UserService;
+import com.jayway.jsonpath.JsonPath;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.RequestPostProcessor;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.authentication;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.cookie;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureObservability
+@ActiveProfiles("test")
+class UserControllerTests {
+
+	private static final String SUB = "auth0|controller-me";
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private UserService userService;
+
+	@Autowired
+	private UserRepository userRepository;
+
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	private User user;
+
+	@BeforeEach
+	void createUser() {
+		user = userService.findByExternalAuthId(SUB).orElseGet(() -> userService.createUserProfile(SUB,
+				new UserProfileDto("controller-me", "me@example.com", "Me", "Myself", LocalDate.of(1990, 1, 1), null)));
+	}
+
+	@Test
+	void meReturnsProjectionWithEtagAndHonoursIfNoneMatch() throws Exception {
+		String etag = mockMvc.perform(get("/api/users/me").with(as(user)))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.username").value("controller-me"))
+				.andExpect(jsonPath("$.role").value("USER"))
+				.andExpect(jsonPath("$.externalAuthId").doesNotExist())
+				.andExpect(header().exists(HttpHeaders.ETAG))
+				.andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+		mockMvc.perform(get("/api/users/me").with(as(user)).header(HttpHeaders.IF_NONE_MATCH, etag))
+				.andExpect(status().isNotModified())
+				.andExpect(content().string(""));
+	}
+
+	@Test
+	void searchFindsUserByUsernamePrefix() throws Exception {
+		mockMvc.perform(get("/api/users/search").param("q", "controller-m").with(as(user)))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$[0].username").value("controller-me"))
+				.andExpect(jsonPath("$[0].email").doesNotExist());
+
+		// Same answer from the LIKE fallback used while the index is being built
+		assertThat(userRepository.searchByPrefix("controller-m%", Limit.of(10)))
+				.extracting(UserSearchResult::username).containsExactly("controller-me");
+	}
+
+	@Test
+	void batchLookupStreamsKnownProfilesOnce() throws Exception {
+		String body = "[\"" + user.getUuid() + "\", \"" + UUID.randomUUID() + "\", \"" + user.getUuid() + "\"]";
+		for (int call = 0; call < 2; call++) { // second call is served from the profile cache
+			mockMvc.perform(post("/api/users/batch").with(as(user)).contentType(MediaType.APPLICATION_JSON).content(body))
+					.andExpect(status().isOk())
+					.andExpect(jsonPath("$.length()").value(1))
+					.andExpect(jsonPath("$[0].uuid").value(user.getUuid().toString()))
+					.andExpect(jsonPath("$[0].username").value(user.getUsername()))
+					.andExpect(jsonPath("$[0].email").doesNotExist());
+		}
+	}
+
+	@Test
+	void batchLookupRejectsEmptyAndOversizedRequests() throws Exception {
+		mockMvc.perform(post("/api/users/batch").with(as(user)).contentType(MediaType.APPLICATION_JSON).content("[]"))
+				.andExpect(status().isBadRequest())
+				.andExpect(jsonPath("$.error").exists());
+		String tooMany = Stream.generate(() -> "\"" + UUID.randomUUID() + "\"").limit(501)
+				.collect(Collectors.joining(",", "[", "]"));
+		mockMvc.perform(post("/api/users/batch").with(as(user)).contentType(MediaType.APPLICATION_JSON).content(tooMany))
+				.andExpect(status().isBadRequest());
+	}
+
+	@Test
+	void profilePatchChangesSuppliedFieldsOnly() throws Exception {
+		User editor = userService.findByExternalAuthId("auth0|controller-edit").orElseGet(() -> userService.createUserProfile(
+				"auth0|controller-edit", new UserProfileDto("controller-edit", "edit@example.com", "Ed", "Itor", LocalDate.of(1990, 1, 1), null)));
+		String etag = mockMvc.perform(get("/api/users/me").with(as(editor)))
+				.andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+		String lastName = "Itor-" + UUID.randomUUID().toString().substring(0, 8);
+
+		String newEtag = mockMvc.perform(patch("/api/users/profile").with(as(editor)).header(HttpHeaders.IF_MATCH, etag)
+						.contentType(MediaType.APPLICATION_JSON).content("{\"lastName\": \"" + lastName + "\"}"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.lastName").value(lastName))
+				.andExpect(jsonPath("$.firstName").value("Ed"))
+				// Lets other nodes serve the next reads from the primary too (see ReadYourWrites)
+				.andExpect(cookie().exists(ReadYourWrites.COOKIE_NAME))
+				.andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+		assertThat(newEtag).isNotEqualTo(etag);
+		User updated = userRepository.findById(editor.getId()).orElseThrow();
+		assertThat(updated.getLastName()).isEqualTo(lastName);
+		assertThat(updated.getUsername()).isEqualTo("controller-edit");
+
+		// Same values again: nothing is written, so the version (and ETag) stay the same
+		mockMvc.perform(put("/api/users/profile").with(as(editor))
+						.contentType(MediaType.APPLICATION_JSON).content("{\"lastName\": \"" + lastName + "\", \"firstName\": \"Ed\"}"))
+				.andExpect(status().isOk())
+				.andExpect(header().string(HttpHeaders.ETAG, newEtag));
+		assertThat(userRepository.findById(editor.getId()).orElseThrow().getVersion()).isEqualTo(updated.getVersion());
+
+		// An edit based on the old ETag is refused
+		mockMvc.perform(patch("/api/users/profile").with(as(editor)).header(HttpHeaders.IF_MATCH, etag)
+						.contentType(MediaType.APPLICATION_JSON).content("{\"firstName\": \"Stale\"}"))
+				.andExpect(status().isPreconditionFailed());
+		mockMvc.perform(patch("/api/users/profile").with(as(editor))
+						.contentType(MediaType.APPLICATION_JSON).content("{\"username\": \"controller-me\"}"))
+				.andExpect(status().isConflict());
+
+		// pictureUrl can only point back at an upload, not anywhere else
+		for (String pictureUrl : new String[]{"https://evil.example/x.png", "javascript:alert(1)",
+				"/public/pictures/../../api/users/me", "/public/pictures/" + "a".repeat(64) + ".png?x=1"}) {
+			mockMvc.perform(patch("/api/users/profile").with(as(editor))
+							.contentType(MediaType.APPLICATION_JSON).content("{\"pictureUrl\": \"" + pictureUrl + "\"}"))
+					.andExpect(status().isBadRequest())
+					.andExpect(jsonPath("$.error").exists());
+		}
+		String uploaded = "/public/pictures/" + "a".repeat(64) + ".png";
+		mockMvc.perform(patch("/api/users/profile").with(as(editor))
+						.contentType(MediaType.APPLICATION_JSON).content("{\"pictureUrl\": \"" + uploaded + "\"}"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.pictureUrl").value(uploaded));
+	}
+
+	@Test
+	void uploadedPictureIsServedWithEtagRangesAndThumbnail() throws Exception {
+		byte[] png = png(600, 400);
+		String pictureUrl = JsonPath.read(mockMvc.perform(put("/api/users/profile/picture").with(as(user))
+						.contentType(MediaType.IMAGE_PNG).content(png))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getContentAsString(), "$.pictureUrl");
+		assertThat(pictureUrl).matches("/public/pictures/[0-9a-f]{64}\\.png");
+		assertThat(userRepository.findById(user.getId()).orElseThrow().getPictureUrl()).isEqualTo(pictureUrl);
+
+		String etag = mockMvc.perform(get(pictureUrl))
+				.andExpect(status().isOk())
+				.andExpect(content().contentType(MediaType.IMAGE_PNG))
+				.andExpect(content().bytes(png))
+				.andExpect(header().string(HttpHeaders.CACHE_CONTROL, containsString("immutable")))
+				.andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+		mockMvc.perform(get(pictureUrl).header(HttpHeaders.IF_NONE_MATCH, etag))
+				.andExpect(status().isNotModified());
+		mockMvc.perform(get(pictureUrl).header(HttpHeaders.RANGE, "bytes=8-15"))
+				.andExpect(status().isPartialContent())
+				.andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 8-15/" + png.length))
+				.andExpect(content().bytes(Arrays.copyOfRange(png, 8, 16)));
+		mockMvc.perform(get(pictureUrl).header(HttpHeaders.RANGE, "bytes=" + png.length + "-"))
+				.andExpect(status().isRequestedRangeNotSatisfiable());
+
+		// Generated in the background; the original stands in (uncached) until then
+		String thumbnailUrl = pictureUrl.replace(".png", "-thumb.png");
+		BufferedImage thumbnail = null;
+		for (int attempt = 0; attempt < 50 && thumbnail == null; attempt++) {
+			MockHttpServletResponse response = mockMvc.perform(get(thumbnailUrl))
+					.andExpect(status().isOk()).andReturn().getResponse();
+			if (response.getHeader(HttpHeaders.CACHE_CONTROL).contains("immutable")) {
+				thumbnail = ImageIO.read(new ByteArrayInputStream(response.getContentAsByteArray()));
+			} else {
+				Thread.sleep(100);
+			}
+		}
+		assertThat(thumbnail).isNotNull();
+		assertThat(thumbnail.getWidth()).isEqualTo(256);
+		assertThat(thumbnail.getHeight()).isEqualTo(256);
+	}
+
+	@Test
+	void pictureUploadRejectsNonImages() throws Exception {
+		mockMvc.perform(put("/api/users/profile/picture").with(as(user))
+						.contentType(MediaType.IMAGE_JPEG).content("<html>not a picture</html>"))
+				.andExpect(status().isBadRequest())
+				.andExpect(jsonPath("$.error").exists());
+		mockMvc.perform(get("/public/pictures/secret.png"))
+				.andExpect(status().isNotFound());
+	}
+
+	@Test
+	void signupAttemptsAreRateLimitedPerSubject() throws Exception {
+		Counter rejections = meterRegistry.get("encoria.security.rate-limit.rejections").tag("route", "signup").counter();
+		double before = rejections.count();
+		RequestPostProcessor flooder = authentication(new ResolvedUserAuthenticationToken(
+				jwt("auth0|controller-flood"), ResolvedUser.unregistered("auth0|controller-flood")));
+
+		// Every attempt takes a token, whatever the outcome (here: rejected bodies)
+		for (int i = 0; i < 5; i++) {
+			mockMvc.perform(post("/api/users/profile").with(flooder).contentType(MediaType.APPLICATION_JSON).content("{}"))
+					.andExpect(status().is4xxClientError());
+		}
+		mockMvc.perform(post("/api/users/profile").with(flooder).contentType(MediaType.APPLICATION_JSON).content("{}"))
+				.andExpect(status().isTooManyRequests())
+				.andExpect(header().exists(HttpHeaders.RETRY_AFTER))
+				.andExpect(jsonPath("$.error").value("RATE_LIMITED"));
+		// Someone else's bucket is untouched
+		mockMvc.perform(get("/api/users/me").with(as(user)))
+				.andExpect(status().isOk());
+		assertThat(rejections.count()).isEqualTo(before + 1);
+	}
+
+	@Test
+	void signupWithForeignPictureUrlIsRejected() throws Exception {
+		String sub = "auth0|controller-hotlink";
+		mockMvc.perform(post("/api/users/profile")
+						.with(authentication(new ResolvedUserAuthenticationToken(jwt(sub), ResolvedUser.unregistered(sub))))
+						.contentType(MediaType.APPLICATION_JSON)
+						.content("{\"username\": \"controller-hotlink\", \"email\": \"hotlink@example.com\", "
+								+ "\"birthdate\": \"1990-01-01\", \"pictureUrl\": \"https://evil.example/x.png\"}"))
+				.andExpect(status().isBadRequest())
+				.andExpect(jsonPath("$.error").value("pictureUrl must be a URL returned by the picture upload."));
+		assertThat(userService.findByExternalAuthId(sub)).isEmpty();
+	}
+
+	@Test
+	void disabledAccountIsRejectedUntilRestored() throws Exception {
+		User banned = userService.findByExternalAuthId("auth0|controller-banned").orElseGet(() -> userService.createUserProfile(
+				"auth0|controller-banned", new UserProfileDto("controller-banned", "banned@example.com", "Ban", "Ned", LocalDate.of(1990, 1, 1), null)));
+		String accessPath = "/api/users/" + banned.getUuid() + "/access";
+
+		mockMvc.perform(put(accessPath).with(as(user)).contentType(MediaType.APPLICATION_JSON).content("{\"enabled\": false}"))
+				.andExpect(status().isForbidden()); // Admin only
+		mockMvc.perform(put(accessPath).with(admin()).contentType(MediaType.APPLICATION_JSON).content("{\"enabled\": false}"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.enabled").value(false));
+		// The token is still valid and the principal still cached: only the revocation set knows
+		mockMvc.perform(get("/api/users/me").with(as(banned)))
+				.andExpect(status().isForbidden())
+				.andExpect(jsonPath("$.error").value("ACCOUNT_DISABLED"));
+
+		mockMvc.perform(put(accessPath).with(admin()).contentType(MediaType.APPLICATION_JSON).content("{\"enabled\": true}"))
+				.andExpect(status().isOk());
+		mockMvc.perform(get("/api/users/me").with(as(banned)))
+				.andExpect(status().isOk());
+	}
+
+	@Test
+	void incompleteProfileIsRejectedByFilter() throws Exception {
+		Counter rejections = meterRegistry.get("encoria.security.profile.rejections").counter();
+		double before = rejections.count();
+
+		Jwt jwt = jwt("auth0|nobody");
+		mockMvc.perform(get("/api/users/me")
+						.with(authentication(new ResolvedUserAuthenticationToken(jwt, ResolvedUser.unregistered("auth0|nobody")))))
+				.andExpect(status().isForbidden())
+				.andExpect(jsonPath("$.error").value("PROFILE_SETUP_REQUIRED"));
+
+		assertThat(rejections.count()).isEqualTo(before + 1);
+	}
+
+	@Test
+	void staleUnregisteredSnapshotIsCheckedAgainstTheDatabase() throws Exception {
+		// As cached by a node that didn't handle the signup
+		mockMvc.perform(get("/api/users/me")
+						.with(authentication(new ResolvedUserAuthenticationToken(jwt(SUB), ResolvedUser.unregistered(SUB)))))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.username").value("controller-me"));
+	}
+
+	@Test
+	void prometheusScrapeRequiresAdmin() throws Exception {
+		mockMvc.perform(get("/actuator/prometheus").with(as(user)))
+				.andExpect(status().isForbidden());
+
+		String scrape = mockMvc.perform(get("/actuator/prometheus").with(admin()))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getContentAsString();
+		assertThat(scrape)
+				.contains("encoria_security_profile_filter_seconds_count")
+				.contains("encoria_security_user_resolve_seconds_count")
+				.contains("spring_data_repository_invocations_seconds_count{")
+				.contains("hikaricp_connections_pending")
+				.contains("hibernate_statements_total");
+	}
+
+	private static byte[] png(int width, int height) throws IOException {
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		for (int x = 0; x < width; x++) {
+			for (int y = 0; y < height; y++) {
+				image.setRGB(x, y, (x * 255 / width) << 16 | (y * 255 / height) << 8);
+			}
+		}
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ImageIO.write(image, "png", out);
+		return out.toByteArray();
+	}
+
+	// An admin service account with no row in the database
+	static RequestPostProcessor admin() {
+		ResolvedUser admin = new ResolvedUser("auth0|metrics", -1L, UUID.randomUUID(), "metrics", "ADMIN", true, true,
+				List.of(new SimpleGrantedAuthority("ROLE_ADMIN")));
+		return authentication(new ResolvedUserAuthenticationToken(jwt(admin.externalAuthId()), admin));
+	}
+
+	// Authenticates like the real chain does after CachingJwtDecoder + ResolvedUserJwtAuthenticationConverter
+	static RequestPostProcessor as(User user) {
+		return authentication(new ResolvedUserAuthenticationToken(jwt(user.getExternalAuthId()), ResolvedUser.from(user)));
+	}
+
+	static Jwt jwt(String subject) {
+		return Jwt.withTokenValue("token").header("alg", "RS256").subject(subject).build();
+	}
+
+}
@@ -0,0 +1,225 @@
+package com.encoria.backend.security;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jose.proc.JWSVerificationKeySelector;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import com.nimbusds.jwt.proc.DefaultJWTProcessor;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Runs CachingJwkSource against a local stub OIDC discovery + JWKS server.
+ */
+class CachingJwkSourceTests {
+
+	@TempDir
+	Path tempDir;
+
+	private HttpServer server;
+	private String issuer;
+	private final AtomicReference<JWKSet> servedKeys = new AtomicReference<>();
+	private final AtomicInteger jwksRequests = new AtomicInteger();
+	private volatile CountDownLatch jwksGate = new CountDownLatch(0);
+
+	@BeforeEach
+	void startStubIssuer() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		issuer = "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+		server.createContext("/.well-known/openid-configuration", exchange ->
+				respond(exchange, "{\"issuer\":\"" + issuer + "\",\"jwks_uri\":\"" + issuer + "jwks.json\"}"));
+		server.createContext("/jwks.json", exchange -> {
+			jwksRequests.incrementAndGet();
+			try {
+				jwksGate.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			respond(exchange, servedKeys.get().toString(true));
+		});
+		server.start();
+	}
+
+	@AfterEach
+	void stopStubIssuer() {
+		server.stop(0);
+	}
+
+	@Test
+	void fetchesKeysThroughDiscoveryAndServesThemFromMemory() throws Exception {
+		RSAKey key = newKey("k1");
+		servedKeys.set(new JWKSet(key.toPublicJWK()));
+
+		try (CachingJwkSource source = newSource(Duration.ofMinutes(1))) {
+			NimbusJwtDecoder decoder = decoder(source);
+			assertThat(decoder.decode(sign(key, "auth0|1")).getSubject()).isEqualTo("auth0|1");
+			assertThat(decoder.decode(sign(key, "auth0|2")).getSubject()).isEqualTo("auth0|2");
+		}
+		assertThat(jwksRequests).hasValue(1);
+	}
+
+	@Test
+	void restartedNodeValidatesFromCacheFileWhileIssuerIsDown() throws Exception {
+		RSAKey key = newKey("k1");
+		servedKeys.set(new JWKSet(key.toPublicJWK()));
+		try (CachingJwkSource source = newSource(Duration.ofMinutes(1))) {
+			decoder(source).decode(sign(key, "auth0|1"));
+		}
+
+		server.stop(0);
+
+		try (CachingJwkSource restarted = newSource(Duration.ofMinutes(1))) {
+			assertThat(restarted.hasKeys()).isTrue();
+			assertThat(decoder(restarted).decode(sign(key, "auth0|1")).getSubject()).isEqualTo("auth0|1");
+		}
+	}
+
+	@Test
+	void unknownKidTriggersRefreshAtMostOncePerInterval() throws Exception {
+		RSAKey oldKey = newKey("k1");
+		RSAKey newKey = newKey("k2");
+		servedKeys.set(new JWKSet(oldKey.toPublicJWK()));
+
+		try (CachingJwkSource source = newSource(Duration.ofMinutes(1))) {
+			NimbusJwtDecoder decoder = decoder(source);
+			decoder.decode(sign(oldKey, "auth0|1"));
+
+			// Key rotated at the IdP, but we fetched moments ago: don't hammer it
+			servedKeys.set(new JWKSet(newKey.toPublicJWK()));
+			assertThatThrownBy(() -> decoder.decode(sign(newKey, "auth0|1"))).isInstanceOf(JwtException.class);
+			assertThat(jwksRequests).hasValue(1);
+		}
+
+		try (CachingJwkSource source = newSource(Duration.ZERO)) {
+			assertThat(decoder(source).decode(sign(newKey, "auth0|1")).getSubject()).isEqualTo("auth0|1");
+		}
+	}
+
+	@Test
+	void concurrentMissesShareOneFetch() throws Exception {
+		RSAKey key = newKey("k1");
+		servedKeys.set(new JWKSet(key.toPublicJWK()));
+		jwksGate = new CountDownLatch(1);
+
+		try (CachingJwkSource source = newSource(Duration.ZERO)) {
+			NimbusJwtDecoder decoder = decoder(source);
+			String token = sign(key, "auth0|1");
+			ExecutorService callers = Executors.newFixedThreadPool(4);
+			try {
+				List<Future<String>> subjects = IntStream.range(0, 4)
+						.mapToObj(i -> callers.submit(() -> decoder.decode(token).getSubject()))
+						.toList();
+				long deadline = System.currentTimeMillis() + 5000;
+				while (jwksRequests.get() == 0 && System.currentTimeMillis() < deadline) {
+					Thread.sleep(10);
+				}
+				// The other callers are waiting on the running fetch, not starting their own
+				Thread.sleep(200);
+				jwksGate.countDown();
+				for (Future<String> subject : subjects) {
+					assertThat(subject.get(5, TimeUnit.SECONDS)).isEqualTo("auth0|1");
+				}
+			} finally {
+				callers.shutdownNow();
+			}
+		}
+		assertThat(jwksRequests).hasValue(1);
+	}
+
+	@Test
+	void cachedKeysPostponeTheFirstFetchUntilRefreshingStarts() throws Exception {
+		RSAKey key = newKey("k1");
+		servedKeys.set(new JWKSet(key.toPublicJWK()));
+		try (CachingJwkSource source = newSource(Duration.ofMinutes(1))) {
+			decoder(source).decode(sign(key, "auth0|1"));
+		}
+		jwksRequests.set(0);
+
+		try (CachingJwkSource restarted = newSource(Duration.ofMinutes(1))) {
+			restarted.start();
+			Thread.sleep(200);
+			assertThat(jwksRequests).hasValue(0);
+
+			restarted.startRefreshing();
+			restarted.startRefreshing();
+			long deadline = System.currentTimeMillis() + 5000;
+			while (jwksRequests.get() == 0 && System.currentTimeMillis() < deadline) {
+				Thread.sleep(10);
+			}
+			assertThat(jwksRequests).hasValue(1);
+		}
+	}
+
+	private CachingJwkSource newSource(Duration minRefreshInterval) {
+		return new CachingJwkSource(issuer, null, tempDir.resolve("jwks.json"),
+				Duration.ofMinutes(5), minRefreshInterval, Duration.ofSeconds(2));
+	}
+
+	private static NimbusJwtDecoder decoder(CachingJwkSource source) {
+		DefaultJWTProcessor<SecurityContext> processor = new DefaultJWTProcessor<>();
+		processor.setJWSKeySelector(new JWSVerificationKeySelector<>(JWSAlgorithm.RS256, source));
+		processor.setJWTClaimsSetVerifier((claims, context) -> { });
+		return new NimbusJwtDecoder(processor);
+	}
+
+	private static RSAKey newKey(String kid) throws JOSEException {
+		return new RSAKeyGenerator(2048).keyID(kid).generate();
+	}
+
+	private String sign(RSAKey key, String subject) throws JOSEException {
+		JWTClaimsSet claims = new JWTClaimsSet.Builder()
+				.issuer(issuer)
+				.subject(subject)
+				.audience("api")
+				.issueTime(new Date())
+				.expirationTime(Date.from(Instant.now().plusSeconds(300)))
+				.build();
+		SignedJWT jwt = new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(key.getKeyID()).build(), claims);
+		jwt.sign(new RSASSASigner(key));
+		return jwt.serialize();
+	}
+
+	private static void respond(HttpExchange exchange, String body) throws IOException {
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().add("Content-Type", "application/json");
+		exchange.sendResponseHeaders(200, bytes.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+	}
+
+}
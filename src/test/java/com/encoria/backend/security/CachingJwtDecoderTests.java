@@ -0,0 +1,82 @@
+package com.encoria.backend.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.jwt.BadJwtException;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CachingJwtDecoderTests {
+
+	private final AtomicInteger delegateCalls = new AtomicInteger();
+
+	private JwtDecoder delegate(Instant expiresAt) {
+		return token -> {
+			delegateCalls.incrementAndGet();
+			if (token.startsWith("bad")) {
+				throw new BadJwtException("invalid signature");
+			}
+			Jwt.Builder builder = Jwt.withTokenValue(token).header("alg", "RS256").subject("auth0|" + token);
+			if (expiresAt != null) {
+				builder.issuedAt(expiresAt.minusSeconds(600)).expiresAt(expiresAt);
+			}
+			return builder.build();
+		};
+	}
+
+	@Test
+	void repeatedTokenIsVerifiedOnce() {
+		CachingJwtDecoder decoder = new CachingJwtDecoder(delegate(Instant.now().plusSeconds(300)), 100, new SimpleMeterRegistry());
+
+		Jwt first = decoder.decode("token-a");
+		Jwt second = decoder.decode("token-a");
+		decoder.decode("token-b");
+
+		assertThat(second).isSameAs(first);
+		assertThat(delegateCalls).hasValue(2);
+	}
+
+	@Test
+	void expiredOrExpLessTokensAreNotServedFromCache() {
+		CachingJwtDecoder expired = new CachingJwtDecoder(delegate(Instant.now().minusSeconds(1)), 100, new SimpleMeterRegistry());
+		expired.decode("token-a");
+		expired.decode("token-a");
+		assertThat(delegateCalls).hasValue(2);
+
+		CachingJwtDecoder noExp = new CachingJwtDecoder(delegate(null), 100, new SimpleMeterRegistry());
+		noExp.decode("token-a");
+		noExp.decode("token-a");
+		assertThat(delegateCalls).hasValue(4);
+	}
+
+	@Test
+	void rejectedTokensAreNeverCached() {
+		CachingJwtDecoder decoder = new CachingJwtDecoder(delegate(Instant.now().plusSeconds(300)), 100, new SimpleMeterRegistry());
+
+		assertThatThrownBy(() -> decoder.decode("bad-token")).isInstanceOf(BadJwtException.class);
+		assertThatThrownBy(() -> decoder.decode("bad-token")).isInstanceOf(BadJwtException.class);
+		assertThat(delegateCalls).hasValue(2);
+	}
+
+	@Test
+	void decodesAreTimedByOutcome() {
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		CachingJwtDecoder decoder = new CachingJwtDecoder(delegate(Instant.now().plusSeconds(300)), 100, registry);
+
+		decoder.decode("token-a");
+		decoder.decode("token-a");
+		decoder.decode("token-a");
+		assertThatThrownBy(() -> decoder.decode("bad-token")).isInstanceOf(BadJwtException.class);
+
+		assertThat(registry.get(CachingJwtDecoder.TIMER_NAME).tag("result", "verified").timer().count()).isEqualTo(1);
+		assertThat(registry.get(CachingJwtDecoder.TIMER_NAME).tag("result", "cached").timer().count()).isEqualTo(2);
+		assertThat(registry.get(CachingJwtDecoder.TIMER_NAME).tag("result", "rejected").timer().count()).isEqualTo(1);
+	}
+
+}
@@ -0,0 +1,114 @@
+package com.encoria.backend.security;
+
+import com.encoria.backend.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Publishing side of {@link PostgresRevocationBus} on the test H2 database, with pg_notify standing in as a function
+ * that queues the notice in a table on the caller's connection. Like a Postgres NOTIFY, it is only "delivered"
+ * (the row only survives) if the transaction it ran in commits. Public so H2 can call {@link #pgNotify}.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+public class PostgresRevocationBusTests {
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+
+	@Autowired
+	private UserRepository userRepository;
+
+	@Autowired
+	private DataSource dataSource;
+
+	// Called by H2 for "select pg_notify(?, ?)", on the connection that ran it
+	public static void pgNotify(Connection connection, String channel, String payload) throws SQLException {
+		try (PreparedStatement insert = connection.prepareStatement("insert into test_notifications (channel, payload) values (?, ?)")) {
+			insert.setString(1, channel);
+			insert.setString(2, payload);
+			insert.executeUpdate();
+		}
+	}
+
+	@BeforeEach
+	void installPgNotify() {
+		jdbcTemplate.execute("create table if not exists test_notifications (channel varchar(64), payload varchar(8000))");
+		jdbcTemplate.execute("create alias if not exists pg_notify for \"" + getClass().getName() + ".pgNotify\"");
+		jdbcTemplate.execute("delete from test_notifications");
+	}
+
+	// The listener thread isn't started; only publish() is exercised
+	private RevocationSet node() {
+		PostgresRevocationBus bus = new PostgresRevocationBus(jdbcTemplate, null, null, null, Duration.ofSeconds(1));
+		return new RevocationSet(userRepository, bus, new SimpleMeterRegistry(), Duration.ofHours(1));
+	}
+
+	private List<RevocationNotice> delivered() {
+		return jdbcTemplate.query("select payload from test_notifications where channel = ?",
+				(rs, row) -> RevocationNotice.decode(rs.getString(1)), PostgresRevocationBus.CHANNEL);
+	}
+
+	// What another connection sees, i.e. what has been committed
+	private int deliveredElsewhere() {
+		try (Connection other = dataSource.getConnection();
+			 ResultSet rs = other.createStatement().executeQuery("select count(*) from test_notifications")) {
+			rs.next();
+			return rs.getInt(1);
+		} catch (SQLException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	@Test
+	void noticeIsDeliveredWithTheCommit() {
+		RevocationSet node = node();
+
+		transactionTemplate.executeWithoutResult(status -> {
+			node.publishAfterCommit(42, true);
+			// Sent on the transaction's own connection, and held back from everyone else until it commits
+			assertThat(delivered()).hasSize(1);
+			assertThat(deliveredElsewhere()).isZero();
+			assertThat(node.isRevoked(42)).isFalse(); // Not before the change is committed
+		});
+
+		assertThat(delivered()).singleElement().satisfies(notice -> {
+			assertThat(notice.userId()).isEqualTo(42);
+			assertThat(notice.revoked()).isTrue();
+		});
+		assertThat(node.isRevoked(42)).isTrue();
+	}
+
+	@Test
+	void rolledBackChangeIsNeverAnnounced() {
+		RevocationSet node = node();
+
+		transactionTemplate.executeWithoutResult(status -> {
+			node.publishAfterCommit(43, true);
+			status.setRollbackOnly();
+		});
+
+		assertThat(delivered()).isEmpty();
+		assertThat(node.isRevoked(43)).isFalse();
+	}
+}
@@ -0,0 +1,76 @@
+package com.encoria.backend.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RateLimiterTests {
+
+	private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+	private RateLimiter limiter(boolean enabled) {
+		return new RateLimiter(new RateLimitProperties(enabled, 1000, List.of(
+				new RateLimitProperties.Route("signup", "POST", "/api/users/profile", 2, Duration.ofSeconds(10)),
+				new RateLimitProperties.Route("api", "", "/api/**", 10, Duration.ofSeconds(1)))), registry);
+	}
+
+	@Test
+	void burstIsAllowedThenRefillsOneTokenPerInterval() {
+		RateLimiter limiter = limiter(true);
+		RateLimiter.Route signup = limiter.route("POST", "/api/users/profile");
+		long now = 42 * SECOND;
+
+		assertThat(limiter.tryAcquire(signup, "auth0|a", now)).isZero();
+		assertThat(limiter.tryAcquire(signup, "auth0|a", now)).isZero();
+		// Empty: one token comes back every 5 s
+		assertThat(limiter.tryAcquire(signup, "auth0|a", now)).isEqualTo(5 * SECOND);
+		assertThat(limiter.tryAcquire(signup, "auth0|a", now + 2 * SECOND)).isEqualTo(3 * SECOND);
+		// Other clients have their own bucket
+		assertThat(limiter.tryAcquire(signup, "auth0|b", now)).isZero();
+
+		assertThat(limiter.tryAcquire(signup, "auth0|a", now + 5 * SECOND)).isZero();
+		assertThat(limiter.tryAcquire(signup, "auth0|a", now + 5 * SECOND)).isPositive();
+		// Idle for a whole period: full again, not more than full
+		long later = now + 60 * SECOND;
+		assertThat(limiter.tryAcquire(signup, "auth0|a", later)).isZero();
+		assertThat(limiter.tryAcquire(signup, "auth0|a", later)).isZero();
+		assertThat(limiter.tryAcquire(signup, "auth0|a", later)).isPositive();
+
+		assertThat(registry.get("encoria.security.rate-limit.rejections").tag("route", "signup").counter().count())
+				.isEqualTo(4);
+	}
+
+	@Test
+	void firstMatchingRouteApplies() {
+		RateLimiter limiter = limiter(true);
+
+		assertThat(limiter.route("POST", "/api/users/profile").name()).isEqualTo("signup");
+		assertThat(limiter.route("PATCH", "/api/users/profile").name()).isEqualTo("api");
+		assertThat(limiter.route("GET", "/api/users/me").name()).isEqualTo("api");
+		assertThat(limiter.route("GET", "/actuator/health")).isNull();
+		assertThat(limiter(false).route("GET", "/api/users/me")).isNull();
+	}
+
+	@Test
+	void otherSpellingsOfAPathHitTheSameRoute() {
+		RateLimiter limiter = limiter(true);
+
+		for (String uri : new String[]{"/api/users/profile;jsessionid=0123", "//api//users/profile", "/api/%75sers/profile",
+				"/app/api/users/profile"}) {
+			MockHttpServletRequest request = new MockHttpServletRequest("POST", uri);
+			if (uri.startsWith("/app/")) {
+				request.setContextPath("/app");
+			}
+			assertThat(limiter.route(request)).as(uri).extracting(RateLimiter.Route::name).isEqualTo("signup");
+		}
+		assertThat(limiter.route(new MockHttpServletRequest("GET", "/%61pi/users/me")).name()).isEqualTo("api");
+	}
+}
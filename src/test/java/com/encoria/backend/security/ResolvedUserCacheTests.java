@@ -0,0 +1,71 @@
+package com.encoria.backend.security;
+
+import com.encoria.backend.config.ReadYourWrites;
+import com.encoria.backend.model.UserProfileDto;
+import com.encoria.backend.repository.UserRepository;
+import com.encoria.backend.service.UserService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Duration;
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class ResolvedUserCacheTests {
+
+	@Autowired
+	private UserRepository userRepository;
+
+	@Autowired
+	private ReadYourWrites readYourWrites;
+
+	@Autowired
+	private UserService userService;
+
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+	// A negative-ttl long enough that nothing expires during the test
+	private ResolvedUserCache cache() {
+		return new ResolvedUserCache(userRepository, readYourWrites, registry, 100, Duration.ofMinutes(1), Duration.ofMinutes(1));
+	}
+
+	private long databaseLookups() {
+		return registry.get(ResolvedUserCache.TIMER_NAME).tag("result", "unregistered").timer().count()
+				+ registry.get(ResolvedUserCache.TIMER_NAME).tag("result", "found").timer().count();
+	}
+
+	@Test
+	void unregisteredClientRetryingIsRecheckedOncePerNegativeTtl() {
+		ResolvedUserCache cache = cache();
+		String sub = "auth0|retrying-without-profile";
+
+		assertThat(cache.resolve(sub).isRegistered()).isFalse();
+		for (int i = 0; i < 20; i++) {
+			assertThat(cache.recheckUnregistered(sub).isRegistered()).isFalse();
+		}
+
+		// The first lookup, then a single recheck on the primary
+		assertThat(databaseLookups()).isEqualTo(2);
+	}
+
+	@Test
+	void subjectThatJustSignedUpIsRecheckedRightAway() {
+		ResolvedUserCache cache = cache();
+		String sub = "auth0|signed-up-elsewhere";
+		cache.resolve(sub);
+		cache.recheckUnregistered(sub); // Uses up the recheck for this negative-ttl
+
+		// Records the write, as the node that handled the signup (or its cookie) would tell this one
+		userService.createUserProfile(sub,
+				new UserProfileDto("signed-up-elsewhere", "signed.up@example.com", "Late", "Comer", LocalDate.of(1990, 1, 1), null));
+
+		assertThat(cache.recheckUnregistered(sub).isProfileComplete()).isTrue();
+		assertThat(cache.resolve(sub).isProfileComplete()).isTrue();
+	}
+}
@@ -0,0 +1,68 @@
+package com.encoria.backend.security;
+
+import com.encoria.backend.model.User;
+import com.encoria.backend.model.UserAccessDto;
+import com.encoria.backend.model.UserProfileDto;
+import com.encoria.backend.repository.UserRepository;
+import com.encoria.backend.service.UserService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Duration;
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class RevocationSetTests {
+
+	@Autowired
+	private UserService userService;
+
+	@Autowired
+	private UserRepository userRepository;
+
+	private User user(String name) {
+		return userService.findByExternalAuthId("auth0|" + name).orElseGet(() -> userService.createUserProfile("auth0|" + name,
+				new UserProfileDto(name, name + "@example.com", "Revo", "Cation", LocalDate.of(1990, 1, 1), null)));
+	}
+
+	// A node of its own; several on the same bus behave like a cluster
+	private RevocationSet node(RevocationBus bus) {
+		return new RevocationSet(userRepository, bus, new SimpleMeterRegistry(), Duration.ofHours(1));
+	}
+
+	@Test
+	void changesReachEveryNodeOnTheBus() {
+		LocalRevocationBus bus = new LocalRevocationBus();
+		RevocationSet first = node(bus);
+		RevocationSet second = node(bus);
+
+		first.publishAfterCommit(42, true);
+		first.publishAfterCommit(7, true);
+		assertThat(second.isRevoked(42)).isTrue();
+		assertThat(second.isRevoked(7)).isTrue();
+
+		second.publishAfterCommit(42, false);
+		assertThat(first.isRevoked(42)).isFalse();
+		assertThat(first.isRevoked(7)).isTrue();
+	}
+
+	@Test
+	void loadsDisabledAndLockedUsersFromTheDatabase() {
+		User active = user("revocation-active");
+		User locked = user("revocation-locked");
+		userService.updateAccess(locked.getUuid(), new UserAccessDto(null, false));
+
+		RevocationSet node = node(new LocalRevocationBus());
+		node.load();
+		assertThat(node.isRevoked(locked.getId())).isTrue();
+		assertThat(node.isRevoked(active.getId())).isFalse(); // Signups start enabled and unlocked
+		assertThat(active.isEnabled()).isTrue();
+		assertThat(active.isNonLocked()).isTrue();
+	}
+}
@@ -0,0 +1,42 @@
+package com.encoria.backend.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class DataInitializationServiceTests {
+
+	@Autowired
+	private DataInitializationService dataInitializationService;
+
+	@Autowired
+	private RoleCatalog roleCatalog;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	private int roleCount(String code) {
+		return jdbcTemplate.queryForObject("select count(*) from user_roles where code = ?", Integer.class, code);
+	}
+
+	@Test
+	void missingRolesAreInsertedOnceAndExistingOnesKept() {
+		Integer userRoleId = jdbcTemplate.queryForObject("select id from user_roles where code = 'USER'", Integer.class);
+		// No user is an admin, so the row can go
+		jdbcTemplate.update("delete from user_roles where code = 'ADMIN'");
+
+		dataInitializationService.initializeData();
+		dataInitializationService.initializeData();
+
+		assertThat(roleCount("ADMIN")).isEqualTo(1);
+		assertThat(roleCount("USER")).isEqualTo(1);
+		assertThat(roleCatalog.findByCode("USER")).get().extracting(role -> role.getId()).isEqualTo(userRoleId);
+		assertThat(roleCatalog.findByCode("ADMIN")).isPresent();
+	}
+}
@@ -0,0 +1,83 @@
+package com.encoria.backend.service;
+
+import com.encoria.backend.model.User;
+import com.encoria.backend.model.UserProfileDto;
+import com.encoria.backend.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class LastSeenTrackerTests {
+
+	@Autowired
+	private UserService userService;
+
+	@Autowired
+	private UserRepository userRepository;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+
+	private User user(String name) {
+		return userService.findByExternalAuthId("auth0|" + name).orElseGet(() -> userService.createUserProfile("auth0|" + name,
+				new UserProfileDto(name, name + "@example.com", "Last", "Seen", LocalDate.of(1990, 1, 1), null)));
+	}
+
+	// Not started, so only the explicit flush() calls write
+	private LastSeenTracker tracker(SimpleMeterRegistry registry, int maxPending) {
+		return new LastSeenTracker(jdbcTemplate, transactionTemplate, registry, Duration.ofHours(1), maxPending, 2);
+	}
+
+	@Test
+	void activityIsCoalescedPerUserAndWrittenInBatches() {
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		LastSeenTracker tracker = tracker(registry, 100);
+		User first = user("last-seen-1");
+		User second = user("last-seen-2");
+		User third = user("last-seen-3");
+		Instant updatedAt = userRepository.findById(first.getId()).orElseThrow().getUpdatedAt();
+
+		for (int i = 0; i < 1000; i++) {
+			tracker.record(first.getId());
+		}
+		tracker.record(second.getId());
+		tracker.record(third.getId());
+
+		assertThat(tracker.flush()).isEqualTo(3);
+		assertThat(tracker.flush()).isZero();
+		User reloaded = userRepository.findById(first.getId()).orElseThrow();
+		assertThat(reloaded.getLastSeenAt()).isNotNull();
+		assertThat(reloaded.getUpdatedAt()).isEqualTo(updatedAt); // ETags don't change
+		assertThat(registry.get("encoria.users.last-seen.flush.size").summary().totalAmount()).isEqualTo(3);
+		assertThat(registry.get("encoria.users.last-seen.flush.lag").timer().count()).isEqualTo(1);
+	}
+
+	@Test
+	void pendingUsersAreBounded() {
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		LastSeenTracker tracker = tracker(registry, 2);
+
+		tracker.record(user("bounded-1").getId());
+		tracker.record(user("bounded-2").getId());
+		tracker.record(user("bounded-3").getId());
+
+		assertThat(registry.get("encoria.users.last-seen.pending").gauge().value()).isEqualTo(2);
+		assertThat(registry.get("encoria.users.last-seen.dropped").counter().count()).isEqualTo(1);
+		assertThat(tracker.flush()).isEqualTo(2);
+	}
+}
@@ -0,0 +1,89 @@
+package com.encoria.backend.service;
+
+import com.encoria.backend.repository.UserRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class UserImportServiceTests {
+
+	private static final int RECORDS = 20_000;
+	private static final Duration MAX_DURATION = Duration.ofSeconds(60);
+
+	@Autowired
+	private UserImportService userImportService;
+
+	@Autowired
+	private UserRepository userRepository;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	@Test
+	void importsLargeFileInBatchesAndReportsBadRecords() throws Exception {
+		StringBuilder ndjson = new StringBuilder();
+		for (int i = 0; i < RECORDS; i++) {
+			ndjson.append(record("import|" + i, "import" + i, "import" + i + "@example.com")).append('\n');
+		}
+		ndjson.append(record("import|dup-username", "import7", "other@example.com")).append('\n'); // line 20001
+		ndjson.append("{not json\n");                                                                // line 20002
+		ndjson.append("{\"externalAuthId\":\"import|no-birthdate\",\"username\":\"nb\",\"email\":\"nb@example.com\"}\n");
+		ndjson.append(record("import|3", "import3", "import3@example.com")).append('\n');            // resent, line 20004
+		ndjson.append("{\"externalAuthId\":\"import|hotlink\",\"username\":\"hotlink\",\"email\":\"hotlink@example.com\","
+				+ "\"birthdate\":\"1990-01-01\",\"pictureUrl\":\"https://evil.example/x.png\"}\n");         // line 20005
+		long before = userRepository.count();
+
+		ByteArrayOutputStream report = new ByteArrayOutputStream();
+		long start = System.nanoTime();
+		UserImportService.ImportSummary summary = userImportService.importUsers(
+				new ByteArrayInputStream(ndjson.toString().getBytes(StandardCharsets.UTF_8)), report);
+		Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+		assertThat(summary.imported()).isEqualTo(RECORDS);
+		assertThat(summary.received()).isEqualTo(RECORDS + 5);
+		assertThat(summary.failed()).isEqualTo(5);
+		assertThat(userRepository.count()).isEqualTo(before + RECORDS);
+
+		Map<Long, String> errors = new HashMap<>();
+		JsonNode summaryLine = null;
+		for (String line : report.toString(StandardCharsets.UTF_8).split("\n")) {
+			JsonNode node = objectMapper.readTree(line);
+			if (node.has("line")) {
+				errors.put(node.get("line").asLong(), node.get("error").asText());
+			} else {
+				summaryLine = node;
+			}
+		}
+		assertThat(errors).hasSize(5);
+		assertThat(errors.get(RECORDS + 1L)).isEqualTo("Username 'import7' is already taken.");
+		assertThat(errors.get(RECORDS + 2L)).startsWith("Malformed record");
+		assertThat(errors.get(RECORDS + 3L)).isEqualTo("birthdate is required.");
+		assertThat(errors.get(RECORDS + 4L)).isEqualTo("User with this external ID already exists.");
+		assertThat(errors.get(RECORDS + 5L)).isEqualTo("pictureUrl must be a URL returned by the picture upload.");
+		assertThat(summaryLine.get("imported").asLong()).isEqualTo(RECORDS);
+
+		// Regression guard, far above the ~9 s this takes on one CPU: row-at-a-time inserts or a conflict query
+		// per record would blow it. Actual throughput is measured by UserImportBenchmark (jmh profile).
+		assertThat(elapsed).isLessThan(MAX_DURATION);
+	}
+
+	private static String record(String sub, String username, String email) {
+		return "{\"externalAuthId\":\"" + sub + "\",\"username\":\"" + username + "\",\"email\":\"" + email
+				+ "\",\"firstName\":\"Legacy\",\"lastName\":\"User\",\"birthdate\":\"1990-01-01\"}";
+	}
+
+}
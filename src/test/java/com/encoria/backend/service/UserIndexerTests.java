@@ -0,0 +1,83 @@
+package com.encoria.backend.service;
+
+import com.encoria.backend.model.User;
+import com.encoria.backend.model.UserSearchResult;
+import com.encoria.backend.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class UserIndexerTests {
+
+	@Autowired
+	private UserIndexer userIndexer;
+
+	@Autowired
+	private AvailabilityService availabilityService;
+
+	@Autowired
+	private UserSearchIndex userSearchIndex;
+
+	@Autowired
+	private UserRepository userRepository;
+
+	@Autowired
+	private RoleCatalog roleCatalog;
+
+	@BeforeEach
+	void awaitBootstrap() throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 10_000;
+		while (!availabilityService.isReady() && System.currentTimeMillis() < deadline) {
+			Thread.sleep(20);
+		}
+		assertThat(availabilityService.isReady()).isTrue();
+	}
+
+	@Test
+	void catchUpIndexesUsersWrittenThroughOtherNodes() {
+		// Written straight to the table, like a signup handled by another node
+		userRepository.saveAndFlush(user("auth0|other-node", "other-node", "other.node@example.com"));
+
+		assertThat(userIndexer.catchUp()).isPositive();
+
+		assertThat(availabilityService.mightHaveUsername("other-node")).isTrue();
+		assertThat(availabilityService.mightHaveEmail("Other.Node@example.com")).isTrue();
+		assertThat(availabilityService.isUsernameAvailable("other-node")).isFalse();
+		assertThat(userSearchIndex.search("other-no", 10)).extracting(UserSearchResult::username).containsExactly("other-node");
+	}
+
+	@Test
+	void catchUpPicksUpRenamesThroughOtherNodes() {
+		User user = userRepository.saveAndFlush(user("auth0|renamed-elsewhere", "before-rename", "before.rename@example.com"));
+		userIndexer.catchUp();
+
+		user.setUsername("after-rename");
+		userRepository.saveAndFlush(user);
+		userIndexer.catchUp();
+
+		assertThat(userSearchIndex.search("before-ren", 10)).isEmpty();
+		assertThat(userSearchIndex.search("after-ren", 10)).extracting(UserSearchResult::username).containsExactly("after-rename");
+	}
+
+	private User user(String sub, String username, String email) {
+		return User.builder()
+				.externalAuthId(sub)
+				.username(username)
+				.email(email)
+				.firstName("Other")
+				.lastName("Node")
+				.birthdate(LocalDate.of(1990, 1, 1))
+				.role(roleCatalog.findByCode(DataInitializationService.ROLE_USER).orElseThrow())
+				.isEnabled(true)
+				.isNonLocked(true)
+				.build();
+	}
+}
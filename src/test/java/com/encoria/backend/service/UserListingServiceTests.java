@@ -0,0 +1,99 @@
+package com.encoria.backend.service;
+
+import com.encoria.backend.model.User;
+import com.encoria.backend.model.UserPage;
+import com.encoria.backend.model.UserSummary;
+import com.encoria.backend.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class UserListingServiceTests {
+
+	// Small enough for several pages even when this class runs alone (137 seeded users)
+	private static final int PAGE_SIZE = 50;
+
+	@Autowired
+	private UserListingService userListingService;
+
+	@Autowired
+	private UserRepository userRepository;
+
+	@Autowired
+	private RoleCatalog roleCatalog;
+
+	@BeforeEach
+	void seedUsers() {
+		if (userRepository.existsByUsername("listing0")) {
+			return;
+		}
+		List<User> users = new ArrayList<>();
+		for (int i = 0; i < 137; i++) {
+			users.add(User.builder()
+					.externalAuthId("listing|" + i)
+					.username("listing" + i)
+					.email("listing" + i + "@example.com")
+					.firstName(i % 2 == 0 ? "Comma, First" : "Quote \"Q\"")
+					.birthdate(LocalDate.of(1990, 1, 1))
+					.role(roleCatalog.findByCode(DataInitializationService.ROLE_USER).orElseThrow())
+					.isEnabled(true)
+					.isNonLocked(true)
+					.build());
+		}
+		userRepository.saveAll(users);
+	}
+
+	@Test
+	void keysetPagesCoverEveryUserExactlyOnce() {
+		for (UserListingService.SortKey sort : UserListingService.SortKey.values()) {
+			Set<Long> seen = new HashSet<>();
+			String cursor = null;
+			int pages = 0;
+			do {
+				UserPage page = userListingService.listUsers(sort, cursor, PAGE_SIZE);
+				for (UserSummary user : page.users()) {
+					assertThat(seen.add(user.id())).as("%s returned id %d twice", sort, user.id()).isTrue();
+				}
+				cursor = page.nextCursor();
+				pages++;
+			} while (cursor != null);
+
+			assertThat(seen).hasSize((int) userRepository.count());
+			assertThat(pages).isGreaterThan(1);
+		}
+	}
+
+	@Test
+	void csvExportHasHeaderPlusOneLinePerUser() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		userListingService.exportUsers(UserListingService.ExportFormat.CSV, out);
+
+		String csv = out.toString(StandardCharsets.UTF_8);
+		assertThat(csv.split("\n")).hasSize((int) userRepository.count() + 1);
+		assertThat(csv).contains("\"Comma, First\"").contains("\"Quote \"\"Q\"\"\"");
+	}
+
+	@Test
+	void invalidCursorOrSizeIsRejected() {
+		assertThatThrownBy(() -> userListingService.listUsers(UserListingService.SortKey.ID, "not-a-cursor", 10))
+				.isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> userListingService.listUsers(UserListingService.SortKey.ID, null, 10_000))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+
+}
@@ -0,0 +1,82 @@
+package com.encoria.backend.service;
+
+import com.encoria.backend.model.UserIndexEntry;
+import com.encoria.backend.model.UserSearchResult;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UserSearchIndexTests {
+
+	private final UserSearchIndex index = new UserSearchIndex();
+
+	@Test
+	void matchesPrefixesOfUsernameAndNamesIgnoringCaseAndAccents() {
+		index.index(entry(1L, "jdoe", "José", "Doe"));
+		index.index(entry(2L, "joanna", "Joanna", "Smith"));
+		index.index(entry(3L, "bsmith", "Bob", "Smith"));
+
+		assertThat(index.search("jo", 10)).extracting(UserSearchResult::username).containsExactlyInAnyOrder("jdoe", "joanna");
+		assertThat(index.search("JOSE D", 10)).extracting(UserSearchResult::username).containsExactly("jdoe");
+		assertThat(index.search("smi", 10)).extracting(UserSearchResult::username).containsExactlyInAnyOrder("joanna", "bsmith");
+		assertThat(index.search("smi", 1)).hasSize(1);
+		assertThat(index.search("  ", 10)).isEmpty();
+	}
+
+	@Test
+	void reindexingReplacesPreviousKeys() {
+		index.index(entry(1L, "oldname", "Ann", "Lee"));
+		index.index(entry(1L, "newname", "Ann", "Lee"));
+
+		assertThat(index.search("old", 10)).isEmpty();
+		assertThat(index.search("new", 10)).extracting(UserSearchResult::username).containsExactly("newname");
+		assertThat(index.search("ann", 10)).hasSize(1);
+	}
+
+	@Test
+	void olderSnapshotDoesNotReplaceNewerOne() {
+		index.index(entry(1L, "renamed", "Ann", "Lee", 2L));
+		index.index(entry(1L, "original", "Ann", "Lee", 1L));
+
+		assertThat(index.search("orig", 10)).isEmpty();
+		assertThat(index.search("ren", 10)).extracting(UserSearchResult::username).containsExactly("renamed");
+	}
+
+	@Test
+	void concurrentReindexesLeaveOnlyOneUsersKeys() throws Exception {
+		ExecutorService pool = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<?>> writes = IntStream.range(0, 2_000)
+					.mapToObj(i -> pool.submit(() -> index.index(entry(1L, "name" + i, "First" + i, "Last" + i))))
+					.collect(Collectors.toList());
+			for (Future<?> write : writes) {
+				write.get(10, TimeUnit.SECONDS);
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+
+		// Whichever write won, only its username, first, last and full name keys remain
+		assertThat(index.keyCount()).isEqualTo(4);
+		String username = index.search("name", 1).get(0).username();
+		assertThat(index.search(username.replace("name", "first"), 50)).hasSize(1);
+	}
+
+	private static UserIndexEntry entry(Long id, String username, String firstName, String lastName) {
+		return entry(id, username, firstName, lastName, null);
+	}
+
+	private static UserIndexEntry entry(Long id, String username, String firstName, String lastName, Long version) {
+		return new UserIndexEntry(id, UUID.randomUUID(), username, username + "@example.com", firstName, lastName, null, version);
+	}
+
+}
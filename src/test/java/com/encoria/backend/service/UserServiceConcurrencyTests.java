@@ -0,0 +1,119 @@
+package com.encoria.backend.service;
+
+import com.encoria.backend.model.UserProfileDto;
+import com.encoria.backend.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Fires parallel signups (including double-submits and username/email races) at the optimistic
+ * createUserProfile path and checks every conflict is reported with the right 409 message.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class UserServiceConcurrencyTests {
+
+	private static final int THREADS = 16;
+	private static final int SIGNUPS = 200;
+
+	@Autowired
+	private UserService userService;
+
+	@Autowired
+	private UserRepository userRepository;
+
+	@Test
+	void parallelDistinctSignupsAllSucceed() throws Exception {
+		long before = userRepository.count();
+
+		Map<String, AtomicInteger> outcomes = race(SIGNUPS, i -> signup("distinct-" + i, "distinct" + i, "distinct" + i + "@example.com"));
+
+		assertThat(outcomes).containsOnlyKeys("created");
+		assertThat(userRepository.count()).isEqualTo(before + SIGNUPS);
+	}
+
+	@Test
+	void doubleSubmitsCreateOneProfileEach() throws Exception {
+		Map<String, AtomicInteger> outcomes = race(SIGNUPS, i -> {
+			int user = i / 2; // every signup is sent twice, with a different username/email the second time
+			return signup("double-" + user, "double" + i, "double" + i + "@example.com");
+		});
+
+		assertThat(outcomes.get("created")).hasValue(SIGNUPS / 2);
+		assertThat(outcomes.get("User with this external ID already exists.")).hasValue(SIGNUPS / 2);
+	}
+
+	@Test
+	void usernameAndEmailRacesReportTheViolatedField() throws Exception {
+		Map<String, AtomicInteger> usernames = race(20, i -> signup("uname-race-" + i, "taken", "uname-race" + i + "@example.com"));
+		assertThat(usernames.get("created")).hasValue(1);
+		assertThat(usernames.get("Username 'taken' is already taken.")).hasValue(19);
+
+		Map<String, AtomicInteger> emails = race(20, i -> signup("email-race-" + i, "email-race" + i, "taken@example.com"));
+		assertThat(emails.get("created")).hasValue(1);
+		assertThat(emails.get("Email 'taken@example.com' is already registered.")).hasValue(19);
+	}
+
+	@Test
+	void emailsDifferingOnlyInCaseConflict() throws Exception {
+		assertThat(signup("email-case-1", "email-case-1", "Mixed.Case@example.com").call()).isEqualTo("created");
+		assertThat(signup("email-case-2", "email-case-2", "mixed.case@EXAMPLE.com").call())
+				.isEqualTo("Email 'mixed.case@EXAMPLE.com' is already registered.");
+		assertThat(userRepository.existsByEmail("MIXED.CASE@example.COM")).isTrue();
+	}
+
+	// Runs all signups at once and counts outcomes ("created" or the conflict message)
+	private Map<String, AtomicInteger> race(int count, IntFunction<Callable<String>> signups) throws Exception {
+		ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+		CountDownLatch start = new CountDownLatch(1);
+		try {
+			List<Future<String>> futures = new ArrayList<>();
+			for (int i = 0; i < count; i++) {
+				Callable<String> signup = signups.apply(i);
+				futures.add(pool.submit(() -> {
+					start.await();
+					return signup.call();
+				}));
+			}
+			start.countDown();
+			Map<String, AtomicInteger> outcomes = new ConcurrentHashMap<>();
+			for (Future<String> future : futures) {
+				outcomes.computeIfAbsent(future.get(30, TimeUnit.SECONDS), k -> new AtomicInteger()).incrementAndGet();
+			}
+			return outcomes;
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	private Callable<String> signup(String sub, String username, String email) {
+		UserProfileDto dto = new UserProfileDto(username, email, "Test", "User", LocalDate.of(1990, 1, 1), null);
+		return () -> {
+			try {
+				userService.createUserProfile("auth0|" + sub, dto);
+				return "created";
+			} catch (IllegalStateException e) {
+				return e.getMessage();
+			}
+		};
+	}
+
+}
@@ -0,0 +1,31 @@
+package com.encoria.backend.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BloomFilterTests {
+
+	@Test
+	void hasNoFalseNegativesAndRoughlyTheConfiguredFalsePositiveRate() {
+		int n = 100_000;
+		BloomFilter filter = new BloomFilter(n, 0.01);
+		for (int i = 0; i < n; i++) {
+			filter.add("user" + i + "@example.com");
+		}
+
+		for (int i = 0; i < n; i++) {
+			assertThat(filter.mightContain("user" + i + "@example.com")).isTrue();
+		}
+		int falsePositives = 0;
+		for (int i = 0; i < n; i++) {
+			if (filter.mightContain("other" + i + "@example.com")) {
+				falsePositives++;
+			}
+		}
+		assertThat(falsePositives / (double) n).isLessThan(0.02);
+		// ~9.6 bits per entry at 1%
+		assertThat(filter.memoryBytes()).isBetween(110_000L, 130_000L);
+	}
+
+}